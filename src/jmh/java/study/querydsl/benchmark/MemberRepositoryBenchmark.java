@@ -0,0 +1,164 @@
+package study.querydsl.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dao.MemberJpaRepository;
+import study.querydsl.dao.MemberRepository;
+import study.querydsl.dao.support.KeysetPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+/**
+ * study.querydsl.dao 의 조회 경로별 기준 성능.
+ * 인메모리 H2(bench 프로필)에 memberCount 건을 넣고 처리량/평균 지연/할당량(-prof gc)을 잰다.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberRepositoryBenchmark {
+
+  private static final int TEAM_COUNT = 100;
+  private static final int BATCH_SIZE = 10_000;
+
+  @Param({"1000", "100000", "1000000"})
+  public int memberCount;
+
+  private ConfigurableApplicationContext context;
+  private MemberJpaRepository memberJpaRepository;
+  private MemberRepository memberRepository;
+
+  private MemberSearchCondition condition;
+  private Pageable pageable;
+  private String username;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = new SpringApplicationBuilder(QuerydslApplication.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.profiles.active=bench",
+            "--spring.datasource.url=jdbc:h2:mem:bench" + memberCount + ";DB_CLOSE_DELAY=-1");
+    memberJpaRepository = context.getBean(MemberJpaRepository.class);
+    memberRepository = context.getBean(MemberRepository.class);
+    seed(context.getBean(JdbcTemplate.class));
+
+    condition = new MemberSearchCondition();
+    condition.setTeamName("team" + (TEAM_COUNT / 2));
+    condition.setAgeGoe(20);
+    condition.setAgeLoe(40);
+    pageable = PageRequest.of(3, 20);
+    username = "member" + (memberCount / 2);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  // 엔티티를 거치지 않고 JDBC batch 로 바로 넣는다. (ddl-auto=create 로 만든 스키마 기준)
+  private void seed(JdbcTemplate jdbcTemplate) {
+    List<Object[]> teams = new ArrayList<>(TEAM_COUNT);
+    for (long teamId = 1; teamId <= TEAM_COUNT; teamId++) {
+      teams.add(new Object[]{teamId, "team" + teamId});
+    }
+    jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teams);
+
+    List<Object[]> members = new ArrayList<>(BATCH_SIZE);
+    for (long memberId = 1; memberId <= memberCount; memberId++) {
+      members.add(new Object[]{memberId, "member" + memberId, (int) (memberId % 100),
+          memberId % TEAM_COUNT + 1});
+      if (members.size() == BATCH_SIZE) {
+        insertMembers(jdbcTemplate, members);
+        members.clear();
+      }
+    }
+    insertMembers(jdbcTemplate, members);
+  }
+
+  private void insertMembers(JdbcTemplate jdbcTemplate, List<Object[]> members) {
+    if (!members.isEmpty()) {
+      jdbcTemplate.batchUpdate(
+          "insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+    }
+  }
+
+  @Benchmark
+  public List<MemberTeamDto> search() {
+    return memberRepository.search(condition);
+  }
+
+  @Benchmark
+  public List<MemberTeamDto> searchJpaRepository() {
+    return memberJpaRepository.search(condition);
+  }
+
+  @Benchmark
+  public List<MemberTeamDto> searchByBuilder() {
+    return memberJpaRepository.searchByBuilder(condition);
+  }
+
+  @Benchmark
+  public void searchStream(Blackhole blackhole) {
+    memberJpaRepository.searchStream(condition, blackhole::consume);
+  }
+
+  @Benchmark
+  public Page<MemberTeamDto> searchPageSimple() {
+    return memberRepository.searchPageSimple(condition, pageable);
+  }
+
+  @Benchmark
+  public Page<MemberTeamDto> searchPageComplex() {
+    return memberRepository.searchPageComplex(condition, pageable);
+  }
+
+  @Benchmark
+  public KeysetPage<MemberTeamDto> searchKeyset() {
+    return memberRepository.searchKeyset(condition, null, pageable.getPageSize(),
+        Sort.by("age"));
+  }
+
+  @Benchmark
+  public List<Member> findAll() {
+    return memberJpaRepository.findAll();
+  }
+
+  @Benchmark
+  public List<Member> findAll_QueryDsl() {
+    return memberJpaRepository.findAll_QueryDsl();
+  }
+
+  @Benchmark
+  public List<Member> findByUsername() {
+    return memberJpaRepository.findByUsername(username);
+  }
+
+  @Benchmark
+  public List<Member> findByUsername_QueryDls() {
+    return memberJpaRepository.findByUsername_QueryDls(username);
+  }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 마이크로초 기준 log-linear 히스토그램. 2의 거듭제곱 구간마다 32개로 나누므로 분위값 오차는 약 3% 이내다.
+ * (monitoring.LatencyHistogram 은 기록 비용이 더 싸지만 2배 오차라서 부하 테스트 보고용으로는 거칠다)
+ */
+class LatencyRecorder {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long micros) {
+    long value = Math.max(0, micros);
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * closed loop 보정(coordinated omission). 응답이 expectedIntervalMicros 보다 오래 걸린 동안
+   * 보내지 못한 요청들이 겪었을 지연을 expectedIntervalMicros 간격으로 채워 넣는다.
+   */
+  void recordWithExpectedInterval(long micros, long expectedIntervalMicros) {
+    record(micros);
+    if (expectedIntervalMicros <= 0) {
+      return;
+    }
+    for (long missing = micros - expectedIntervalMicros; missing >= expectedIntervalMicros;
+        missing -= expectedIntervalMicros) {
+      record(missing);
+    }
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  long meanMicros() {
+    long n = count.sum();
+    return n == 0 ? 0 : sum.sum() / n;
+  }
+
+  long maxMicros() {
+    return max.get();
+  }
+
+  // 해당 분위가 속한 버킷의 상한값(us)
+  long percentileMicros(double quantile) {
+    long total = count.sum();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * quantile));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,183 @@
+package study.querydsl.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import study.querydsl.loadtest.RequestMix.Endpoint;
+import study.querydsl.loadtest.RequestMix.Request;
+
+/**
+ * RequestMix 의 요청을 closed / open loop 로 보내고 endpoint 별로 지연을 기록한다.
+ *
+ * 서버가 느려지면 closed loop 는 요청을 덜 보내게 되어 느린 구간이 표본에서 빠진다. (coordinated omission)
+ * open loop 는 요청마다 예정된 송신 시각부터 재서 이를 피하고, closed loop 는 기대 간격으로 빠진 표본을 채운다.
+ * 응답 시간(response)은 보정된 값, 서비스 시간(service)은 실제로 보낸 시각부터 잰 값이다.
+ */
+class LoadGenerator {
+
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  private final HttpClient client;
+  private final RequestMix mix;
+  private final LoadTestConfig config;
+
+  LoadGenerator(RequestMix mix, LoadTestConfig config) {
+    this.client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    this.mix = mix;
+    this.config = config;
+  }
+
+  /**
+   * @param seed                   요청 조합 난수 시드
+   * @param expectedIntervalMicros closed loop 보정에 쓸 요청 간 기대 간격. 0 이면 보정하지 않는다.
+   */
+  Result run(Duration duration, long seed, long expectedIntervalMicros)
+      throws InterruptedException {
+    Result result = new Result();
+    long start = System.nanoTime();
+    long deadline = start + duration.toNanos();
+    if (config.mode() == LoadTestConfig.Mode.OPEN) {
+      runOpen(result, deadline, seed);
+    } else {
+      runClosed(result, deadline, seed, expectedIntervalMicros);
+    }
+    result.elapsedNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  private void runClosed(Result result, long deadline, long seed, long expectedIntervalMicros)
+      throws InterruptedException {
+    ExecutorService workers = Executors.newFixedThreadPool(config.connections());
+    for (int i = 0; i < config.connections(); i++) {
+      SplittableRandom random = new SplittableRandom(seed + i);
+      workers.execute(() -> {
+        while (System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted()) {
+          Request request = mix.next(random);
+          long sent = System.nanoTime();
+          int status = send(request);
+          long micros = (System.nanoTime() - sent) / 1000;
+          Stats stats = result.stats(request.endpoint());
+          stats.count(status);
+          stats.service.record(micros);
+          stats.response.recordWithExpectedInterval(micros, expectedIntervalMicros);
+        }
+      });
+    }
+    workers.shutdown();
+    long waitNanos = deadline - System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+    if (!workers.awaitTermination(Math.max(0, waitNanos), TimeUnit.NANOSECONDS)) {
+      workers.shutdownNow();
+    }
+  }
+
+  private void runOpen(Result result, long deadline, long seed) throws InterruptedException {
+    SplittableRandom random = new SplittableRandom(seed);
+    Semaphore inFlight = new Semaphore(config.connections());
+    long periodNanos = TimeUnit.SECONDS.toNanos(1) / config.rate();
+    long start = System.nanoTime();
+    for (long i = 0; ; i++) {
+      long intended = start + i * periodNanos;
+      if (intended - deadline >= 0) {
+        break;
+      }
+      long wait;
+      while ((wait = intended - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      // 자리가 날 때까지 기다린 시간도 예정 시각부터 재므로 응답 시간에 들어간다.
+      inFlight.acquire();
+      Request request = mix.next(random);
+      long sent = System.nanoTime();
+      client.sendAsync(httpRequest(request), HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, error) -> {
+            long done = System.nanoTime();
+            inFlight.release();
+            Stats stats = result.stats(request.endpoint());
+            stats.count(error == null ? response.statusCode() : -1);
+            stats.service.record((done - sent) / 1000);
+            stats.response.record((done - intended) / 1000);
+          });
+    }
+    // 보낸 요청이 모두 끝날 때까지 기다린다.
+    inFlight.tryAcquire(config.connections(), REQUEST_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  // 실패(연결 오류, 타임아웃)는 -1
+  private int send(Request request) {
+    try {
+      return client.send(httpRequest(request), HttpResponse.BodyHandlers.discarding())
+          .statusCode();
+    } catch (IOException e) {
+      return -1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  // /v1/members 는 Accept 에 따라 열 단위 형식도 주므로 JSON 을 명시한다.
+  private static HttpRequest httpRequest(Request request) {
+    return HttpRequest.newBuilder(request.uri())
+        .timeout(REQUEST_TIMEOUT)
+        .header("Accept", "application/json")
+        .GET()
+        .build();
+  }
+
+  static final class Result {
+
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private long elapsedNanos;
+
+    private Result() {
+      for (Endpoint endpoint : Endpoint.values()) {
+        stats.put(endpoint, new Stats());
+      }
+    }
+
+    Stats stats(Endpoint endpoint) {
+      return stats.get(endpoint);
+    }
+
+    long elapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+
+  static final class Stats {
+
+    final LatencyRecorder response = new LatencyRecorder();
+    final LatencyRecorder service = new LatencyRecorder();
+    // HTTP 상태 코드별 건수. 실패는 -1
+    final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private void count(int status) {
+      statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    long errors() {
+      long errors = 0;
+      for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+        if (entry.getKey() < 200 || entry.getKey() >= 400) {
+          errors += entry.getValue().sum();
+        }
+      }
+      return errors;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.loadtest;
+
+import java.time.Duration;
+import java.util.Locale;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * loadTest.* 시스템 프로퍼티. (gradle 에서는 -PloadTest.xxx 로 넘긴다)
+ *
+ * @param mode        closed: connections 개의 워커가 응답을 받자마자 다음 요청을 보낸다.
+ *                    open: 응답과 관계없이 rate(req/s) 간격으로 보내고, 동시에 connections 개까지만 보낸다.
+ * @param rows        InitMember 로 넣을 회원 수
+ * @param maxPage     /v2 에서 고를 최대 page 번호
+ * @param v1Ratio     /v1 요청 비율 (나머지는 /v2)
+ */
+record LoadTestConfig(Mode mode, int connections, int rate, Duration warmup, Duration duration,
+                      int rows, int teams, int maxAge, int maxPage, double v1Ratio, long seed) {
+
+  enum Mode {
+    CLOSED, OPEN
+  }
+
+  LoadTestConfig {
+    if (connections <= 0) {
+      throw new IllegalArgumentException("connections must be greater than zero: " + connections);
+    }
+    if (mode == Mode.OPEN && rate <= 0) {
+      throw new IllegalArgumentException("rate must be greater than zero: " + rate);
+    }
+    if (rows <= 0 || teams <= 0) {
+      throw new IllegalArgumentException("rows and teams must be greater than zero");
+    }
+  }
+
+  static LoadTestConfig fromSystemProperties() {
+    return new LoadTestConfig(
+        Mode.valueOf(property("mode", "closed").toUpperCase(Locale.ROOT)),
+        Integer.parseInt(property("connections", "16")),
+        Integer.parseInt(property("rate", "500")),
+        DurationStyle.detectAndParse(property("warmup", "10s")),
+        DurationStyle.detectAndParse(property("duration", "30s")),
+        Integer.parseInt(property("rows", "100000")),
+        Integer.parseInt(property("teams", "10")),
+        Integer.parseInt(property("maxAge", "99")),
+        Integer.parseInt(property("maxPage", "20")),
+        Double.parseDouble(property("v1Ratio", "0.5")),
+        Long.parseLong(property("seed", "42")));
+  }
+
+  private static String property(String name, String defaultValue) {
+    return System.getProperty("loadTest." + name, defaultValue);
+  }
+}
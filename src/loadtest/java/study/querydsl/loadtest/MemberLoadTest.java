@@ -0,0 +1,98 @@
+package study.querydsl.loadtest;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.loadtest.LoadGenerator.Result;
+import study.querydsl.loadtest.LoadGenerator.Stats;
+import study.querydsl.loadtest.RequestMix.Endpoint;
+
+/**
+ * 인메모리 H2(loadtest 프로필)에 InitMember 로 회원을 넣고 앱을 임의 포트로 띄운 뒤,
+ * localhost 에서 /v1/members, /v2/members 에 HTTP 부하를 걸어 처리량과 p50/p99/p999 를 출력한다.
+ * warmup 결과는 버리고, closed loop 의 지연 보정 간격은 warmup 의 평균 응답 시간으로 정한다.
+ *
+ * ./gradlew loadTest -PloadTest.mode=closed -PloadTest.connections=32 -PloadTest.duration=60s
+ */
+public class MemberLoadTest {
+
+  public static void main(String[] args) throws Exception {
+    LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+        .run("--spring.profiles.active=local,loadtest",
+            "--init-member.rows=" + config.rows(),
+            "--init-member.teams=" + config.teams(),
+            "--init-member.max-age=" + config.maxAge());
+    try {
+      String port = context.getEnvironment().getRequiredProperty("local.server.port");
+      RequestMix mix = new RequestMix("http://localhost:" + port, config);
+      LoadGenerator generator = new LoadGenerator(mix, config);
+
+      System.out.println("load test: " + config);
+      Result warmup = generator.run(config.warmup(), config.seed(), 0);
+      long expectedIntervalMicros = config.mode() == LoadTestConfig.Mode.CLOSED
+          ? meanServiceMicros(warmup) : 0;
+      Result result = generator.run(config.duration(), config.seed() + config.connections(),
+          expectedIntervalMicros);
+      print(result, expectedIntervalMicros);
+    } finally {
+      context.close();
+    }
+  }
+
+  private static long meanServiceMicros(Result result) {
+    long count = 0;
+    long sum = 0;
+    for (Endpoint endpoint : Endpoint.values()) {
+      LatencyRecorder service = result.stats(endpoint).service;
+      count += service.count();
+      sum += service.meanMicros() * service.count();
+    }
+    return count == 0 ? 0 : sum / count;
+  }
+
+  private static void print(Result result, long expectedIntervalMicros) {
+    double seconds = result.elapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+    long total = 0;
+    for (Endpoint endpoint : Endpoint.values()) {
+      total += result.stats(endpoint).service.count();
+    }
+    System.out.printf(Locale.ROOT, "%n%d requests in %.1fs, %.1f req/s%n", total, seconds,
+        total / seconds);
+    if (expectedIntervalMicros > 0) {
+      System.out.printf(Locale.ROOT, "closed loop correction interval: %.2fms%n",
+          expectedIntervalMicros / 1000.0);
+    }
+
+    System.out.printf(Locale.ROOT, "%n%-9s %-8s %9s %10s %9s %9s %9s %9s %9s%n", "endpoint",
+        "latency", "requests", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "errors");
+    for (Endpoint endpoint : Endpoint.values()) {
+      Stats stats = result.stats(endpoint);
+      printRow(endpoint, "response", stats.response, stats, seconds);
+      printRow(endpoint, "service", stats.service, stats, seconds);
+    }
+
+    System.out.println();
+    for (Endpoint endpoint : Endpoint.values()) {
+      Map<Integer, Long> statuses = new TreeMap<>();
+      for (Map.Entry<Integer, LongAdder> entry : result.stats(endpoint).statuses.entrySet()) {
+        statuses.put(entry.getKey(), entry.getValue().sum());
+      }
+      System.out.println(endpoint + " status: " + statuses);
+    }
+  }
+
+  // response 행의 건수에는 closed loop 보정으로 채운 표본도 들어간다. req/s 는 실제 요청 기준이다.
+  private static void printRow(Endpoint endpoint, String label, LatencyRecorder latency,
+      Stats stats, double seconds) {
+    System.out.printf(Locale.ROOT, "%-9s %-8s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %9d%n",
+        endpoint, label, latency.count(), stats.service.count() / seconds,
+        latency.percentileMicros(0.50) / 1000.0, latency.percentileMicros(0.99) / 1000.0,
+        latency.percentileMicros(0.999) / 1000.0, latency.maxMicros() / 1000.0, stats.errors());
+  }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * MemberSearchCondition / Pageable 조합을 섞어서 /v1/members, /v2/members 요청 URI 를 만든다.
+ * 값은 InitMember 가 넣는 데이터(member0.., teamA.., 0~maxAge 세)에 맞춘다.
+ * /v1 은 페이지가 없어서 조건이 없으면 전체를 돌려주므로 항상 username 이나 (팀, 좁은 나이 범위)로 좁힌다.
+ */
+class RequestMix {
+
+  enum Endpoint {
+    V1, V2
+  }
+
+  private static final int[] PAGE_SIZES = {10, 20, 50};
+  private static final String[] SORTS = {null, "username", "age,desc"};
+
+  private final String baseUrl;
+  private final LoadTestConfig config;
+
+  RequestMix(String baseUrl, LoadTestConfig config) {
+    this.baseUrl = baseUrl;
+    this.config = config;
+  }
+
+  Request next(SplittableRandom random) {
+    return random.nextDouble() < config.v1Ratio() ? v1(random) : v2(random);
+  }
+
+  private Request v1(SplittableRandom random) {
+    Query query = new Query("/v1/members");
+    if (random.nextInt(4) == 0) {
+      query.add("username", "member" + random.nextInt(config.rows()));
+    } else {
+      int ageGoe = random.nextInt(config.maxAge() + 1);
+      query.add("teamName", teamName(random.nextInt(config.teams())));
+      query.add("ageGoe", ageGoe);
+      query.add("ageLoe", ageGoe + random.nextInt(5));
+    }
+    return new Request(Endpoint.V1, query.toUri());
+  }
+
+  private Request v2(SplittableRandom random) {
+    Query query = new Query("/v2/members");
+    if (random.nextInt(2) == 0) {
+      query.add("teamName", teamName(random.nextInt(config.teams())));
+    }
+    if (random.nextInt(3) == 0) {
+      int ageGoe = random.nextInt(config.maxAge() + 1);
+      query.add("ageGoe", ageGoe);
+      query.add("ageLoe", ageGoe + random.nextInt(30));
+    }
+    if (random.nextInt(10) == 0) {
+      query.add("usernamePrefix", "member" + random.nextInt(100));
+    }
+    query.add("page", random.nextInt(config.maxPage() + 1));
+    query.add("size", PAGE_SIZES[random.nextInt(PAGE_SIZES.length)]);
+    String sort = SORTS[random.nextInt(SORTS.length)];
+    if (sort != null) {
+      query.add("sort", sort);
+    }
+    return new Request(Endpoint.V2, query.toUri());
+  }
+
+  // InitMember 의 팀 이름 규칙과 같다.
+  private static String teamName(int index) {
+    return index < 26 ? "team" + (char) ('A' + index) : "team" + index;
+  }
+
+  record Request(Endpoint endpoint, URI uri) {
+
+  }
+
+  private final class Query {
+
+    private final StringBuilder url;
+    private char separator = '?';
+
+    private Query(String path) {
+      this.url = new StringBuilder(baseUrl).append(path);
+    }
+
+    void add(String name, Object value) {
+      url.append(separator).append(name).append('=')
+          .append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8));
+      separator = '&';
+    }
+
+    URI toUri() {
+      return URI.create(url.toString());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dao.AgeHistogram;
+import study.querydsl.dto.AgeHistogramDto;
+
+@RestController
+@RequiredArgsConstructor
+public class AgeHistogramController {
+
+  private final AgeHistogram ageHistogram;
+
+  // 나이 구간별 회원 수. 구간마다 member 를 count 하지 않고 메모리의 누적합으로 답한다.
+  @GetMapping("/members/age-histogram")
+  public AgeHistogramDto ageHistogram(@RequestParam(defaultValue = "10") int width,
+      @RequestParam(required = false) String teamName,
+      @RequestParam(required = false) Integer ageGoe,
+      @RequestParam(required = false) Integer ageLoe) {
+    return ageHistogram.histogram(width, teamName, ageGoe, ageLoe);
+  }
+
+  @GetMapping("/members/age-count")
+  public long ageCount(@RequestParam(required = false) String teamName,
+      @RequestParam(required = false) Integer ageGoe,
+      @RequestParam(required = false) Integer ageLoe) {
+    return ageHistogram.count(teamName, ageGoe, ageLoe);
+  }
+
+  // 직접 SQL 등 애플리케이션 밖에서 member 가 바뀌었을 때 다시 센다.
+  @PostMapping("/members/age-histogram/rebuild")
+  public void rebuildAgeHistogram() {
+    ageHistogram.rebuild();
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+    return ResponseEntity.badRequest().body(e.getMessage());
+  }
+}
@@ -0,0 +1,60 @@
+package study.querydsl.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@RestController
+public class CacheStatsController {
+
+  private final Statistics statistics;
+
+  public CacheStatsController(EntityManagerFactory emf) {
+    this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  // 2차 캐시 영역별 hit / miss / put 과 hit 비율 (hibernate.generate_statistics=true 일 때만 집계된다)
+  @GetMapping("/internal/cache-stats")
+  public Map<String, Object> cacheStats() {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("enabled", statistics.isStatisticsEnabled());
+    result.put("secondLevelCache", ratio(statistics.getSecondLevelCacheHitCount(),
+        statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+    result.put(Team.class.getName(), region(Team.class.getName()));
+    result.put(Member.class.getName(), region(Member.class.getName()));
+    result.put("queryCache", ratio(statistics.getQueryCacheHitCount(),
+        statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+    return result;
+  }
+
+  private Map<String, Object> region(String regionName) {
+    CacheRegionStatistics region;
+    try {
+      region = statistics.getDomainDataRegionStatistics(regionName);
+    } catch (IllegalArgumentException e) {
+      // 2차 캐시를 끈 설정(test 프로필 등)에서는 영역이 없다.
+      return Map.of();
+    }
+    Map<String, Object> result = ratio(region.getHitCount(), region.getMissCount(),
+        region.getPutCount());
+    result.put("elementCountInMemory", region.getElementCountInMemory());
+    return result;
+  }
+
+  private static Map<String, Object> ratio(long hit, long miss, long put) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("hit", hit);
+    result.put("miss", miss);
+    result.put("put", put);
+    result.put("hitRatio", hit + miss == 0 ? 0.0 : (double) hit / (hit + miss));
+    return result;
+  }
+
+}
@@ -0,0 +1,25 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.datasource.ReadWriteRoutingDataSource;
+
+@RestController
+public class DataSourceStatsController {
+
+  private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+
+  public DataSourceStatsController(ObjectProvider<ReadWriteRoutingDataSource> routingDataSource) {
+    this.routingDataSource = routingDataSource;
+  }
+
+  // 풀별 라우팅 건수 / active / idle / waiting 과 replica 지연. replica 를 설정하지 않았으면 404
+  @GetMapping("/internal/datasources")
+  public ResponseEntity<ReadWriteRoutingDataSource.Stats> dataSourceStats() {
+    ReadWriteRoutingDataSource dataSource = routingDataSource.getIfAvailable();
+    return dataSource == null ? ResponseEntity.notFound().build()
+        : ResponseEntity.ok(dataSource.stats());
+  }
+}
@@ -3,10 +3,15 @@ package study.querydsl.controller;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.controller.InitMemberProperties.Distribution;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
@@ -22,25 +27,114 @@ public class InitMember {
     initMemberService.init();
   }
 
+  /**
+   * chunkSize 건마다 flush/clear 후 커밋한다.
+   * 영속성 컨텍스트와 트랜잭션 크기가 chunk 단위로 유지되므로 수백만 건도 메모리가 늘지 않고,
+   * insert 는 hibernate.jdbc.batch_size / order_inserts 설정으로 JDBC batch 로 나간다.
+   */
+  @Slf4j
   @Component
   static class InitMemberService {
+
     @PersistenceContext
     private EntityManager em;
 
-    @Transactional
+    private final InitMemberProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    InitMemberService(InitMemberProperties properties, PlatformTransactionManager transactionManager) {
+      this.properties = properties;
+      this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     public void init() {
-      Team teamA = new Team("teamA");
-      Team teamB = new Team("teamB");
-      em.persist(teamA);
-      em.persist(teamB);
-
-      for (int i = 0; i < 100; i++) {
-        Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-        em.persist(new Member("member" + i, i, selectedTeam));
+      long start = System.nanoTime();
+      Long[] teamIds = transactionTemplate.execute(status -> persistTeams());
+
+      SplittableRandom random = new SplittableRandom(properties.getRandomSeed());
+      Sampler teamSampler = sampler(properties.getTeamDistribution(), teamIds.length);
+      Sampler ageSampler = sampler(properties.getAgeDistribution(), properties.getMaxAge() + 1);
+
+      int rows = properties.getRows();
+      int chunkSize = Math.max(1, properties.getChunkSize());
+      for (int from = 0; from < rows; from += chunkSize) {
+        int chunkStart = from;
+        int chunkEnd = Math.min(rows, from + chunkSize);
+        transactionTemplate.executeWithoutResult(status -> {
+          // clear 이후에는 이전 chunk 의 Team 이 준영속이므로 chunk 마다 다시 가져온다.
+          Team[] teams = new Team[teamIds.length];
+          for (int i = chunkStart; i < chunkEnd; i++) {
+            int teamIndex = teamSampler.next(i, random);
+            if (teams[teamIndex] == null) {
+              teams[teamIndex] = em.getReference(Team.class, teamIds[teamIndex]);
+            }
+            em.persist(new Member("member" + i, ageSampler.next(i, random), teams[teamIndex]));
+          }
+          em.flush();
+          em.clear();
+        });
       }
 
+      double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+      log.info("seeded {} members / {} teams in {} s ({} rows/s)", rows, teamIds.length,
+          String.format("%.2f", seconds), String.format("%.0f", rows / Math.max(seconds, 1e-9)));
     }
 
+    private Long[] persistTeams() {
+      Long[] teamIds = new Long[Math.max(1, properties.getTeams())];
+      for (int i = 0; i < teamIds.length; i++) {
+        Team team = new Team(teamName(i));
+        em.persist(team);
+        teamIds[i] = team.getId();
+      }
+      em.flush();
+      em.clear();
+      return teamIds;
+    }
+
+    // 기존 데이터와 같도록 앞의 26개 팀은 teamA ~ teamZ 로 만든다.
+    private static String teamName(int index) {
+      return index < 26 ? "team" + (char) ('A' + index) : "team" + index;
+    }
+
+    private Sampler sampler(Distribution distribution, int size) {
+      if (distribution == Distribution.ZIPF) {
+        return new ZipfSampler(size, properties.getZipfExponent());
+      }
+      return (i, random) -> i % size;
+    }
+  }
+
+  interface Sampler {
+
+    int next(int row, SplittableRandom random);
+  }
+
+  /**
+   * rank k(0부터) 가 1 / (k+1)^s 에 비례하는 확률로 뽑히도록 누적 분포를 미리 계산해 두고 이분 탐색한다.
+   */
+  static class ZipfSampler implements Sampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int size, double exponent) {
+      cumulative = new double[size];
+      double sum = 0;
+      for (int k = 0; k < size; k++) {
+        sum += 1.0 / Math.pow(k + 1, exponent);
+        cumulative[k] = sum;
+      }
+      for (int k = 0; k < size; k++) {
+        cumulative[k] /= sum;
+      }
+    }
+
+    @Override
+    public int next(int row, SplittableRandom random) {
+      int idx = Arrays.binarySearch(cumulative, random.nextDouble());
+      int rank = idx >= 0 ? idx : -idx - 1;
+      return Math.min(rank, cumulative.length - 1);
+    }
   }
 
 }
@@ -0,0 +1,35 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * local 프로필 초기 데이터 설정. 기본값은 기존과 같은 100명 / 2팀이다.
+ */
+@Getter
+@Setter
+@Profile("local")
+@Component
+@ConfigurationProperties(prefix = "init-member")
+public class InitMemberProperties {
+
+  public enum Distribution {
+    UNIFORM, ZIPF
+  }
+
+  private int rows = 100;
+  private int teams = 2;
+  private int maxAge = 99;
+
+  // UNIFORM 은 순서대로 돌아가며 배정하고, ZIPF 는 앞쪽 팀/나이에 몰리도록 배정한다.
+  private Distribution teamDistribution = Distribution.UNIFORM;
+  private Distribution ageDistribution = Distribution.UNIFORM;
+  private double zipfExponent = 1.0;
+  private long randomSeed = 42L;
+
+  // flush/clear 및 커밋 단위. hibernate.jdbc.batch_size 의 배수로 맞추는 것이 좋다.
+  private int chunkSize = 1000;
+}
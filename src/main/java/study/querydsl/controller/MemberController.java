@@ -1,13 +1,37 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dao.MemberCountCache;
 import study.querydsl.dao.MemberJpaRepository;
 import study.querydsl.dao.MemberRepository;
+import study.querydsl.dao.TableVersions;
+import study.querydsl.dao.support.DbBulkhead;
+import study.querydsl.dao.support.DbBulkheadFullException;
+import study.querydsl.dao.support.KeysetPage;
+import study.querydsl.dto.MemberColumns;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -15,17 +39,146 @@ import study.querydsl.dto.MemberTeamDto;
 @RequiredArgsConstructor
 public class MemberController {
 
+  private static final MediaType APPLICATION_NDJSON =
+      MediaType.parseMediaType("application/x-ndjson");
+  private static final MediaType MEMBER_COLUMNS =
+      MediaType.parseMediaType(MemberColumns.MEDIA_TYPE);
+  private static final int STREAM_FLUSH_INTERVAL = 1000;
+  private static final int MAX_KEYSET_SIZE = 100;
+
   private final MemberJpaRepository memberJpaRepository;
   private final MemberRepository memberRepository;
+  private final MemberCountCache memberCountCache;
+  private final ObjectMapper objectMapper;
+  private final MemberRequestExecutor requestExecutor;
+  private final DbBulkhead dbBulkhead;
+  private final TableVersions tableVersions;
 
+  // If-None-Match 가 현재 ETag 와 같으면 SQL 없이 304 를 돌려준다.
   @GetMapping("/v1/members")
-  public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-    return memberJpaRepository.search(condition);
+  public CompletableFuture<ResponseEntity<List<MemberTeamDto>>> searchMemberV1(
+      MemberSearchCondition condition, WebRequest request) {
+    String etag = etag("v1", condition, null);
+    if (etag != null && request.checkNotModified(etag)) {
+      return CompletableFuture.completedFuture(notModified(etag));
+    }
+    return requestExecutor.execute(() -> memberJpaRepository.search(condition))
+        .thenApply(body -> ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(etag).body(body));
+  }
+
+  // Accept: application/vnd.querydsl.member-columns+json 이면 열 단위 + 팀 사전 형식으로 응답한다.
+  @GetMapping(value = "/v1/members", produces = MemberColumns.MEDIA_TYPE)
+  public CompletableFuture<ResponseEntity<MemberColumns>> searchMemberV1Columns(
+      MemberSearchCondition condition, WebRequest request) {
+    String etag = etag("v1-columns", condition, null);
+    if (etag != null && request.checkNotModified(etag)) {
+      return CompletableFuture.completedFuture(notModified(etag));
+    }
+    return requestExecutor.execute(() -> memberJpaRepository.searchColumns(condition))
+        .thenApply(body -> ResponseEntity.ok()
+            .contentType(MEMBER_COLUMNS)
+            .varyBy(HttpHeaders.ACCEPT)
+            .eTag(etag)
+            .body(body));
+  }
+
+  // 대량 export 용. 한 줄에 MemberTeamDto 하나씩(NDJSON) 쓰면서 주기적으로 flush 한다.
+  @GetMapping(value = "/v1/members/stream", produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> streamMemberV1(MemberSearchCondition condition) {
+    StreamingResponseBody body = out -> writeNdjson(condition, out);
+    return ResponseEntity.ok()
+        .contentType(APPLICATION_NDJSON)
+        .body(body);
   }
 
   @GetMapping("/v2/members")
-  public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-    return memberRepository.searchPageComplex(condition, pageable);
+  public CompletableFuture<ResponseEntity<Page<MemberTeamDto>>> searchMemberV2(
+      MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+    String etag = etag("v2", condition, pageable);
+    if (etag != null && request.checkNotModified(etag)) {
+      return CompletableFuture.completedFuture(notModified(etag));
+    }
+    return requestExecutor.execute(() -> memberRepository.searchPageComplex(condition, pageable))
+        .thenApply(body -> ResponseEntity.ok().eTag(etag).body(body));
+  }
+
+  @GetMapping("/v2/members/count-cache")
+  public MemberCountCache.Stats countCacheStats() {
+    return memberCountCache.stats();
+  }
+
+  @GetMapping("/internal/db-bulkhead")
+  public DbBulkhead.Stats dbBulkheadStats() {
+    return dbBulkhead.stats();
+  }
+
+  // 다음 페이지는 응답의 nextCursor 를 cursor 파라미터로 넘겨서 조회한다. (sort=username|age 중 하나)
+  // size 는 MAX_KEYSET_SIZE 로 자르고, 정렬을 여러 개 주면 400 이다.
+  @GetMapping("/v3/members")
+  public KeysetPage<MemberTeamDto> searchMemberV3(MemberSearchCondition condition,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size, Sort sort) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("size must be greater than zero: " + size);
+    }
+    if (sort.stream().count() > 1) {
+      throw new IllegalArgumentException("Keyset pagination supports a single sort order: " + sort);
+    }
+    return memberRepository.searchKeyset(condition, cursor, Math.min(size, MAX_KEYSET_SIZE),
+        sort);
+  }
+
+  // DB 자리가 나지 않으면 커넥션 풀에서 오래 기다리지 않고 바로 503 으로 돌려보낸다.
+  @ExceptionHandler(DbBulkheadFullException.class)
+  public ResponseEntity<String> bulkheadFull(DbBulkheadFullException e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(e.getMessage());
+  }
+
+  // /v3 의 size <= 0, 여러 개의 정렬, 다른 정렬로 만든 커서
+  // (리포지토리에서 던진 IllegalArgumentException 은 InvalidDataAccessApiUsageException 으로 바뀌어 나온다)
+  @ExceptionHandler({IllegalArgumentException.class, InvalidDataAccessApiUsageException.class})
+  public ResponseEntity<String> badRequest(RuntimeException e) {
+    return ResponseEntity.badRequest().body(e.getMessage());
+  }
+
+  // 조건, 페이지, member/team 테이블 버전이 같으면 응답도 같다. 버전은 조회 전에 읽으므로
+  // 조회 중에 커밋된 변경은 다음 요청에서 새 ETag 로 보인다.
+  // replica 가 마지막 변경을 따라잡기 전에는 응답이 이 버전보다 오래됐을 수 있으므로 ETag 없이(null) 응답한다.
+  private String etag(String endpoint, MemberSearchCondition condition, Pageable pageable) {
+    TableVersions.Snapshot versions = tableVersions.current();
+    if (!versions.replicated()) {
+      return null;
+    }
+    String key = endpoint + '|' + condition + '|' + pageable + '|' + versions.epoch() + ':'
+        + versions.member() + ':' + versions.team();
+    return '"' + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + '"';
+  }
+
+  private static <T> ResponseEntity<T> notModified(String etag) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+  }
+
+  private void writeNdjson(MemberSearchCondition condition, OutputStream out) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      // 최상위 값 사이에 기본으로 들어가는 공백 대신 줄바꿈만 직접 쓴다.
+      generator.setRootValueSeparator(null);
+      int[] written = {0};
+      memberJpaRepository.searchStream(condition, dto -> {
+        try {
+          generator.writeObject(dto);
+          generator.writeRaw('\n');
+          if (++written[0] % STREAM_FLUSH_INTERVAL == 0) {
+            generator.flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      generator.flush();
+    }
   }
 
 }
@@ -0,0 +1,36 @@
+package study.querydsl.controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dao.support.DbBulkhead;
+
+/**
+ * member 조회 요청을 {@link DbBulkhead} 를 거쳐 실행한다.
+ * BLOCKING 은 톰캣 요청 스레드에서 그대로 실행하고, ASYNC 는 요청 스레드를 바로 돌려주고
+ * bulkhead 스레드에서 실행한 뒤 서블릿 비동기 처리로 응답한다.
+ */
+@Component
+public class MemberRequestExecutor {
+
+  public enum Mode {
+    BLOCKING, ASYNC
+  }
+
+  private final DbBulkhead bulkhead;
+  private final Mode mode;
+
+  public MemberRequestExecutor(DbBulkhead bulkhead,
+      @Value("${member.execution.mode:blocking}") Mode mode) {
+    this.bulkhead = bulkhead;
+    this.mode = mode;
+  }
+
+  public <T> CompletableFuture<T> execute(Supplier<T> work) {
+    if (mode == Mode.ASYNC) {
+      return bulkhead.callAsync(work);
+    }
+    return CompletableFuture.completedFuture(bulkhead.call(work));
+  }
+}
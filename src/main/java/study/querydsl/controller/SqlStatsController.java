@@ -0,0 +1,28 @@
+package study.querydsl.controller;
+
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.monitoring.SqlStats;
+import study.querydsl.monitoring.SqlStatsRecorder;
+
+@RestController
+@RequiredArgsConstructor
+public class SqlStatsController {
+
+  private final SqlStatsRecorder sqlStatsRecorder;
+
+  // 총 실행 시간이 큰 순서. 지연 시간 단위는 us
+  @GetMapping("/internal/sql-stats")
+  public List<SqlStats.Snapshot> sqlStats() {
+    return sqlStatsRecorder.snapshot();
+  }
+
+  @DeleteMapping("/internal/sql-stats")
+  public void resetSqlStats() {
+    sqlStatsRecorder.reset();
+  }
+
+}
@@ -0,0 +1,28 @@
+package study.querydsl.controller;
+
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dao.TeamStatsRepository;
+import study.querydsl.dto.TeamStatsDto;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamStatsController {
+
+  private final TeamStatsRepository teamStatsRepository;
+
+  // 팀별 회원 수 / 나이 합계, 평균, 최소, 최대. member 를 집계하지 않고 team_stats 만 읽는다.
+  @GetMapping("/teams/stats")
+  public List<TeamStatsDto> teamStats() {
+    return teamStatsRepository.findAll();
+  }
+
+  // 직접 SQL 등 애플리케이션 밖에서 member 가 바뀌었을 때 다시 집계한다.
+  @PostMapping("/teams/stats/rebuild")
+  public void rebuildTeamStats() {
+    teamStatsRepository.rebuild();
+  }
+}
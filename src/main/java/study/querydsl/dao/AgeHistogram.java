@@ -0,0 +1,404 @@
+package study.querydsl.dao;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.AgeHistogramDto;
+
+/**
+ * 나이별 회원 수를 메모리에 들고 있다가 나이 범위 count 와 히스토그램을 member 테이블을 읽지 않고 답한다.
+ *
+ * 전체와 팀별로 나이별 회원 수의 Fenwick tree(누적합 트리)를 두고, 범위 count 는 누적합 두 번의 차이로 구한다.
+ * 변경은 {@link MemberEventListenerSupport} 로 받아 트랜잭션마다 모았다가 커밋된 뒤에 반영한다. (롤백되면 버린다)
+ * DB 커밋과 반영 사이에 다시 센 결과에는 그 변경이 이미 들어 있으므로, 변경을 모은 트랜잭션이 끝나지 않은 동안 센 결과는 캐시하지 않는다.
+ * bulk 연산이나 변경 전 상태를 모르는 update 처럼 이벤트로 따라갈 수 없는 변경이 있으면 비우고,
+ * 다음 조회 때 (team_id, age) group by 한 번으로 다시 만든다.
+ * 메모리에는 [0, MAX_AGE] 나이만 둔다. 그 밖의 나이를 가진 회원이 있으면 구간에 넣을 수 없으므로 따로 세어 두고,
+ * 그동안은 메모리 대신 member 를 (age) group by 해서 답한다.
+ */
+@Component
+public class AgeHistogram extends MemberEventListenerSupport {
+
+  public static final int MAX_AGE = 1023;
+
+  private final JPAQueryFactory queryFactory;
+  private final TeamDictionary teamDictionary;
+  private final Object pendingKey = new Object();
+
+  // counts 는 커밋된 변경이 반영될 때 바뀌므로 읽고 쓸 때 모두 this 로 잠근다.
+  private long generation;
+  // member 변경을 모은 채 아직 끝나지(반영 또는 롤백) 않은 트랜잭션 수
+  private int inFlight;
+  private Counts counts;
+
+  public AgeHistogram(EntityManagerFactory emf, EntityManager em, TeamDictionary teamDictionary) {
+    super(emf);
+    this.queryFactory = new JPAQueryFactory(em);
+    this.teamDictionary = teamDictionary;
+  }
+
+  /**
+   * 나이를 bucketWidth 단위 구간([0, width), [width, 2 * width) ...)으로 나눈 회원 수.
+   * teamName 이 없으면 전체, ageGoe / ageLoe 가 없으면 가장 어린 / 많은 나이가 들어 있는 구간까지 센다.
+   */
+  public AgeHistogramDto histogram(int bucketWidth, String teamName, Integer ageGoe,
+      Integer ageLoe) {
+    if (bucketWidth <= 0) {
+      throw new IllegalArgumentException("Bucket width must be greater than zero: " + bucketWidth);
+    }
+    List<Long> teamIds = teamIdsOf(teamName);
+    return read(() -> histogramFromDatabase(bucketWidth, teamIds, ageGoe, ageLoe), counts -> {
+      int from = ageGoe != null ? Math.max(0, ageGoe)
+          : counts.minAge(teamIds) / bucketWidth * bucketWidth;
+      int to;
+      if (ageLoe != null) {
+        to = Math.min(ageLoe, MAX_AGE);
+      } else {
+        int maxAge = counts.maxAge(teamIds);
+        to = maxAge < 0 ? -1 : bucketEnd(maxAge, bucketWidth);
+      }
+      List<AgeHistogramDto.Bucket> buckets = new ArrayList<>();
+      long total = 0;
+      for (int lo = from; lo <= to; ) {
+        int hi = Math.min(to, bucketEnd(lo, bucketWidth));
+        long count = counts.count(teamIds, lo, hi);
+        buckets.add(new AgeHistogramDto.Bucket(lo, hi, count));
+        total += count;
+        lo = hi + 1;
+      }
+      return new AgeHistogramDto(bucketWidth, total, buckets);
+    });
+  }
+
+  /**
+   * ageGoe 이상 ageLoe 이하인 회원 수. 조건이 없으면 그쪽 끝은 열려 있다.
+   */
+  public long count(String teamName, Integer ageGoe, Integer ageLoe) {
+    List<Long> teamIds = teamIdsOf(teamName);
+    int from = ageGoe != null ? Math.max(0, ageGoe) : 0;
+    int to = ageLoe != null ? Math.min(ageLoe, MAX_AGE) : MAX_AGE;
+    return read(() -> countFromDatabase(teamIds, ageGoe, ageLoe),
+        counts -> counts.count(teamIds, from, to));
+  }
+
+  // 직접 SQL 등 애플리케이션 밖에서 member 가 바뀌었을 때 바로 다시 센다.
+  public void rebuild() {
+    invalidate();
+    load();
+  }
+
+  public synchronized void invalidate() {
+    generation++;
+    counts = null;
+  }
+
+  @Override
+  protected void memberAdded(Long teamId, int age) {
+    pending().deltas.add(new Delta(teamId, age, 1));
+  }
+
+  @Override
+  protected void memberRemoved(Long teamId, int age) {
+    pending().deltas.add(new Delta(teamId, age, -1));
+  }
+
+  // 이전 나이를 모르면 뺄 값이 없으므로 커밋 후 통째로 다시 센다.
+  @Override
+  protected void memberChangedWithoutOldState(Long teamId) {
+    pending().untracked = true;
+  }
+
+  private Pending pending() {
+    Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+    if (pending != null) {
+      return pending;
+    }
+    Pending created = new Pending();
+    TransactionSynchronizationManager.bindResource(pendingKey, created);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+        complete(created, status == STATUS_COMMITTED);
+      }
+    });
+    // 이벤트는 flush 때 나오므로 DB 커밋보다 먼저 센다.
+    synchronized (this) {
+      inFlight++;
+      generation++;
+    }
+    return created;
+  }
+
+  private synchronized void complete(Pending pending, boolean committed) {
+    generation++;
+    inFlight--;
+    if (!committed) {
+      return;
+    }
+    if (pending.untracked) {
+      counts = null;
+      return;
+    }
+    if (counts != null) {
+      for (Delta delta : pending.deltas) {
+        counts.add(delta.teamId(), delta.age(), delta.count());
+      }
+    }
+  }
+
+  // 범위 밖 나이가 있으면 메모리의 누적합은 틀리므로 fromDatabase 로 답한다.
+  private <T> T read(Supplier<T> fromDatabase, Function<Counts, T> reader) {
+    Counts current;
+    synchronized (this) {
+      current = counts;
+      if (current != null && current.outOfRange == 0) {
+        return reader.apply(current);
+      }
+    }
+    if (current == null) {
+      Counts loaded = load();
+      synchronized (this) {
+        if (loaded.outOfRange == 0) {
+          return reader.apply(loaded);
+        }
+      }
+    }
+    return fromDatabase.get();
+  }
+
+  private long countFromDatabase(List<Long> teamIds, Integer ageGoe, Integer ageLoe) {
+    long total = 0;
+    for (Tuple row : ageCounts(teamIds)) {
+      int age = row.get(member.age);
+      if ((ageGoe == null || age >= ageGoe) && (ageLoe == null || age <= ageLoe)) {
+        total += row.get(1, Long.class);
+      }
+    }
+    return total;
+  }
+
+  // 메모리 버전과 같은 규칙으로 구간을 나누되 나이를 자르지 않는다.
+  // 구간은 [min(0, 최소 나이), max(MAX_AGE, 최대 나이)] 안에서만 만든다.
+  private AgeHistogramDto histogramFromDatabase(int bucketWidth, List<Long> teamIds,
+      Integer ageGoe, Integer ageLoe) {
+    List<Tuple> rows = ageCounts(teamIds);
+    int minAge = rows.isEmpty() ? 0 : rows.get(0).get(member.age);
+    int maxAge = rows.isEmpty() ? -1 : rows.get(rows.size() - 1).get(member.age);
+    long from = ageGoe != null ? Math.max(ageGoe, Math.min(0, minAge))
+        : bucketStart(minAge, bucketWidth);
+    long to;
+    if (ageLoe != null) {
+      to = Math.min(ageLoe, Math.max(MAX_AGE, maxAge));
+    } else {
+      to = rows.isEmpty() ? -1 : bucketStart(maxAge, bucketWidth) + bucketWidth - 1;
+    }
+
+    List<AgeHistogramDto.Bucket> buckets = new ArrayList<>();
+    long total = 0;
+    int next = 0;
+    for (long lo = from; lo <= to; ) {
+      long hi = Math.min(to, bucketStart(lo, bucketWidth) + bucketWidth - 1);
+      long count = 0;
+      while (next < rows.size() && rows.get(next).get(member.age) <= hi) {
+        Tuple row = rows.get(next++);
+        if (row.get(member.age) >= lo) {
+          count += row.get(1, Long.class);
+        }
+      }
+      buckets.add(new AgeHistogramDto.Bucket((int) lo, (int) hi, count));
+      total += count;
+      lo = hi + 1;
+    }
+    return new AgeHistogramDto(bucketWidth, total, buckets);
+  }
+
+  // (age, 회원 수) 나이 오름차순. teamIds 가 비어 있으면(없는 팀) SQL 없이 빈 목록
+  private List<Tuple> ageCounts(List<Long> teamIds) {
+    if (teamIds != null && teamIds.isEmpty()) {
+      return List.of();
+    }
+    return queryFactory
+        .select(member.age, member.count())
+        .from(member)
+        .where(teamIds == null ? null : member.team.id.in(teamIds))
+        .groupBy(member.age)
+        .orderBy(member.age.asc())
+        .fetch();
+  }
+
+  private Counts load() {
+    long startGeneration;
+    boolean cacheable;
+    synchronized (this) {
+      startGeneration = generation;
+      cacheable = inFlight == 0;
+    }
+    NumberExpression<Long> count = member.count();
+    List<Tuple> rows = queryFactory
+        .select(member.team.id, member.age, count)
+        .from(member)
+        .groupBy(member.team.id, member.age)
+        .fetch();
+
+    Counts loaded = new Counts();
+    for (Tuple row : rows) {
+      loaded.add(row.get(member.team.id), row.get(member.age), row.get(count));
+    }
+    synchronized (this) {
+      // 읽는 동안 시작했거나 끝나지 않은 트랜잭션의 변경은 결과에 들어갔는지 알 수 없으므로
+      // 이번 호출에서만 쓰고 캐시하지 않는다. (커밋 후 반영될 때 두 번 세지 않도록)
+      if (cacheable && generation == startGeneration) {
+        counts = loaded;
+      }
+    }
+    return loaded;
+  }
+
+  // null 이면 전체, 비어 있으면 해당 팀 없음
+  private List<Long> teamIdsOf(String teamName) {
+    return hasText(teamName) ? teamDictionary.get().idsOf(teamName) : null;
+  }
+
+  private static int bucketEnd(int age, int bucketWidth) {
+    return (int) Math.min(MAX_AGE, ((long) age / bucketWidth + 1) * bucketWidth - 1);
+  }
+
+  private static long bucketStart(long age, int bucketWidth) {
+    return Math.floorDiv(age, bucketWidth) * bucketWidth;
+  }
+
+  private static final class Counts {
+
+    private final AgeCounts all = new AgeCounts();
+    private final Map<Long, AgeCounts> byTeam = new HashMap<>();
+    // [0, MAX_AGE] 밖의 나이를 가진 회원 수. 0 이 아니면 누적합으로 답하지 않는다.
+    private long outOfRange;
+
+    void add(Long teamId, int age, long delta) {
+      if (age < 0 || age > MAX_AGE) {
+        outOfRange += delta;
+        return;
+      }
+      all.add(age, delta);
+      if (teamId != null) {
+        byTeam.computeIfAbsent(teamId, k -> new AgeCounts()).add(age, delta);
+      }
+    }
+
+    long count(List<Long> teamIds, int ageFrom, int ageTo) {
+      if (teamIds == null) {
+        return all.count(ageFrom, ageTo);
+      }
+      long sum = 0;
+      for (Long teamId : teamIds) {
+        AgeCounts counts = byTeam.get(teamId);
+        if (counts != null) {
+          sum += counts.count(ageFrom, ageTo);
+        }
+      }
+      return sum;
+    }
+
+    // 회원이 없으면 0
+    int minAge(List<Long> teamIds) {
+      if (teamIds == null) {
+        return Math.max(0, all.ageAtRank(1));
+      }
+      int min = MAX_AGE;
+      boolean found = false;
+      for (Long teamId : teamIds) {
+        AgeCounts counts = byTeam.get(teamId);
+        int age = counts == null ? -1 : counts.ageAtRank(1);
+        if (age >= 0) {
+          min = Math.min(min, age);
+          found = true;
+        }
+      }
+      return found ? min : 0;
+    }
+
+    // 회원이 없으면 -1
+    int maxAge(List<Long> teamIds) {
+      if (teamIds == null) {
+        return all.ageAtRank(all.countUpTo(MAX_AGE));
+      }
+      int max = -1;
+      for (Long teamId : teamIds) {
+        AgeCounts counts = byTeam.get(teamId);
+        if (counts != null) {
+          max = Math.max(max, counts.ageAtRank(counts.countUpTo(MAX_AGE)));
+        }
+      }
+      return max;
+    }
+  }
+
+  // 나이별 회원 수의 Fenwick tree. tree[i] 는 (i - lowbit(i), i] 번째 나이(1부터)의 회원 수 합이다.
+  private static final class AgeCounts {
+
+    // 크기가 2의 거듭제곱이어야 ageAtRank 의 내려가기가 맞다.
+    private final long[] tree = new long[MAX_AGE + 2];
+
+    // age 는 [0, MAX_AGE] 이다.
+    void add(int age, long delta) {
+      for (int i = age + 1; i < tree.length; i += i & -i) {
+        tree[i] += delta;
+      }
+    }
+
+    // age 이하인 회원 수
+    long countUpTo(int age) {
+      long sum = 0;
+      for (int i = Math.min(age, MAX_AGE) + 1; i > 0; i -= i & -i) {
+        sum += tree[i];
+      }
+      return sum;
+    }
+
+    long count(int ageFrom, int ageTo) {
+      return ageFrom > ageTo ? 0 : countUpTo(ageTo) - countUpTo(ageFrom - 1);
+    }
+
+    // 나이순으로 rank 번째(1부터) 회원의 나이. 없으면 -1
+    int ageAtRank(long rank) {
+      if (rank <= 0 || rank > countUpTo(MAX_AGE)) {
+        return -1;
+      }
+      int position = 0;
+      long remaining = rank;
+      for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+        int next = position + step;
+        if (next < tree.length && tree[next] < remaining) {
+          position = next;
+          remaining -= tree[next];
+        }
+      }
+      return position;
+    }
+  }
+
+  private static final class Pending {
+
+    private final List<Delta> deltas = new ArrayList<>();
+    private boolean untracked;
+  }
+
+  private record Delta(Long teamId, int age, int count) {
+
+  }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.dao;
+
+/**
+ * member 스캔 결과를 담는 재사용 버퍼. 행마다 객체나 박싱된 값을 만들지 않고 앞에서부터 size 개를 채운다.
+ * {@link MemberJpaRepository#scanColumns} 가 배치마다 다시 채우므로, 넘겨받은 배치 안에서만 읽고 배열을 붙잡아 두면 안 된다.
+ */
+public final class MemberColumnBuffer {
+
+  // 팀이 없는 회원의 teamId
+  public static final long NO_TEAM = 0L;
+
+  private final long[] memberIds;
+  private final long[] teamIds;
+  private final int[] ages;
+  private int size;
+
+  public MemberColumnBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than zero: " + capacity);
+    }
+    this.memberIds = new long[capacity];
+    this.teamIds = new long[capacity];
+    this.ages = new int[capacity];
+  }
+
+  public int capacity() {
+    return memberIds.length;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long memberId(int index) {
+    return memberIds[index];
+  }
+
+  public long teamId(int index) {
+    return teamIds[index];
+  }
+
+  public int age(int index) {
+    return ages[index];
+  }
+
+  // 배열을 그대로 돌려준다. 유효한 값은 [0, size) 뿐이다.
+  public long[] memberIds() {
+    return memberIds;
+  }
+
+  public long[] teamIds() {
+    return teamIds;
+  }
+
+  public int[] ages() {
+    return ages;
+  }
+
+  boolean isFull() {
+    return size == memberIds.length;
+  }
+
+  void add(long memberId, long teamId, int age) {
+    memberIds[size] = memberId;
+    teamIds[size] = teamId;
+    ages[size] = age;
+    size++;
+  }
+
+  void clear() {
+    size = 0;
+  }
+}
@@ -0,0 +1,166 @@
+package study.querydsl.dao;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.datasource.ReplicationWatermark;
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * searchPageComplex 의 total count 캐시.
+ * 같은 검색 조건으로 여러 페이지를 넘길 때 count 쿼리를 한 번만 실행하도록 한다.
+ * 최대 maxSize 개를 LRU 로 유지하고 ttl 이 지나면 다시 count 한다.
+ * Member / Team 이 변경되면 {@link MemberCountCacheInvalidator} 가 전체를 비운다.
+ * replica 가 마지막으로 비운 시각 이후를 따라잡기 전에 센 값은 변경 전 count 일 수 있으므로 넣지 않는다.
+ */
+@Component
+public class MemberCountCache {
+
+  private final ReplicationWatermark replicationWatermark;
+  private final Duration ttl;
+  private final int maxSize;
+  private final Map<Key, Entry> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong generation = new AtomicLong();
+  private volatile long invalidatedAtMillis;
+
+  public MemberCountCache(ReplicationWatermark replicationWatermark,
+      @Value("${member.count-cache.ttl:30s}") Duration ttl,
+      @Value("${member.count-cache.max-size:1000}") int maxSize) {
+    this.replicationWatermark = replicationWatermark;
+    this.ttl = ttl;
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        boolean evict = size() > MemberCountCache.this.maxSize;
+        if (evict) {
+          evictionCount.incrementAndGet();
+        }
+        return evict;
+      }
+    };
+  }
+
+  public long get(MemberSearchCondition condition, Supplier<Long> countQuery) {
+    Key key = Key.of(condition);
+    long startGeneration = generation.get();
+    long invalidatedAt = invalidatedAtMillis;
+    long watermark = replicationWatermark.current();
+    long now = System.nanoTime();
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt - now > 0) {
+        hitCount.incrementAndGet();
+        return entry.count;
+      }
+    }
+
+    missCount.incrementAndGet();
+    Long count = countQuery.get();
+    long total = count == null ? 0L : count;
+    synchronized (entries) {
+      // count 하는 동안 무효화가 일어났다면 오래된 값일 수 있으므로 캐시에 넣지 않는다.
+      // 커밋 안 된 변경이 있는 트랜잭션에서 센 값도 롤백될 수 있으므로 넣지 않는다.
+      // replica 가 마지막 무효화 이후를 따라잡지 못했다면 변경 전 값을 셌을 수 있으므로 넣지 않는다.
+      if (generation.get() == startGeneration
+          && !MemberCountCacheInvalidator.hasPendingChanges()
+          && ReplicationWatermark.includes(watermark, invalidatedAt)) {
+        entries.put(key, new Entry(total, System.nanoTime() + ttl.toNanos()));
+      }
+    }
+    return total;
+  }
+
+  public void invalidateAll() {
+    synchronized (entries) {
+      invalidatedAtMillis = System.currentTimeMillis();
+      generation.incrementAndGet();
+      entries.clear();
+    }
+  }
+
+  public Stats stats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new Stats(hitCount.get(), missCount.get(), evictionCount.get(), size);
+  }
+
+  @Getter
+  @ToString
+  public static class Stats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+
+    Stats(long hitCount, long missCount, long evictionCount, int size) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.size = size;
+    }
+
+    public double getHitRatio() {
+      long total = hitCount + missCount;
+      return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+  }
+
+  // 공백/빈 문자열은 조건이 없는 것과 같은 쿼리가 되므로 같은 키로 정규화한다.
+  @EqualsAndHashCode
+  private static final class Key {
+
+    private final String username;
+    private final String usernamePrefix;
+    private final String usernameContains;
+    private final String teamName;
+    private final Integer ageGoe;
+    private final Integer ageLoe;
+
+    private Key(String username, String usernamePrefix, String usernameContains,
+        String teamName, Integer ageGoe, Integer ageLoe) {
+      this.username = username;
+      this.usernamePrefix = usernamePrefix;
+      this.usernameContains = usernameContains;
+      this.teamName = teamName;
+      this.ageGoe = ageGoe;
+      this.ageLoe = ageLoe;
+    }
+
+    static Key of(MemberSearchCondition condition) {
+      return new Key(normalize(condition.getUsername()),
+          normalize(condition.getUsernamePrefix()), normalize(condition.getUsernameContains()),
+          normalize(condition.getTeamName()), condition.getAgeGoe(), condition.getAgeLoe());
+    }
+
+    private static String normalize(String value) {
+      return StringUtils.hasText(value) ? value : null;
+    }
+  }
+
+  private static final class Entry {
+
+    private final long count;
+    private final long expiresAt;
+
+    private Entry(long count, long expiresAt) {
+      this.count = count;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
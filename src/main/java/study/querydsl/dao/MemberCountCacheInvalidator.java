@@ -0,0 +1,47 @@
+package study.querydsl.dao;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Member / Team 엔티티 리스너. save(persist), 변경 감지 update, remove 가 flush 될 때
+ * count 캐시를 비우고, 트랜잭션이 끝나면(커밋이든 롤백이든) 한 번 더 비워서 그 사이에 채워진 값도 버린다.
+ * 변경이 flush 된 트랜잭션 안에서 센 count 는 커밋 안 된 행을 포함하므로 캐시에 넣지 않는다.
+ * ({@link #hasPendingChanges()})
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberCountCacheInvalidator {
+
+  // 현재 트랜잭션에 flush 된 Member / Team 변경이 있다는 표시. 트랜잭션당 콜백도 한 번만 등록한다.
+  private static final Object PENDING_CHANGES = new Object();
+
+  private final MemberCountCache memberCountCache;
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void onChange(Object entity) {
+    memberCountCache.invalidateAll();
+    if (TransactionSynchronizationManager.isSynchronizationActive()
+        && !TransactionSynchronizationManager.hasResource(PENDING_CHANGES)) {
+      TransactionSynchronizationManager.bindResource(PENDING_CHANGES, Boolean.TRUE);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_CHANGES);
+          memberCountCache.invalidateAll();
+        }
+      });
+    }
+  }
+
+  static boolean hasPendingChanges() {
+    return TransactionSynchronizationManager.hasResource(PENDING_CHANGES);
+  }
+}
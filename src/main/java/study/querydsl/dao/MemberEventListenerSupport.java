@@ -0,0 +1,126 @@
+package study.querydsl.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.Objects;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Member 의 (team, age) 변화를 추가/제거로 바꿔서 알려주는 Hibernate post insert/update/delete 리스너.
+ * 이전 값(변경 전 age, team)이 필요해서 JPA 엔티티 리스너 대신 Hibernate 이벤트를 쓴다.
+ * update 는 이전 값 제거 + 새 값 추가로 전달한다. 트랜잭션 동기화가 없는 곳의 변경은 전달하지 않는다.
+ */
+abstract class MemberEventListenerSupport implements PostInsertEventListener,
+    PostUpdateEventListener, PostDeleteEventListener {
+
+  private final EntityManagerFactory emf;
+
+  protected MemberEventListenerSupport(EntityManagerFactory emf) {
+    this.emf = emf;
+  }
+
+  @PostConstruct
+  public void register() {
+    EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+        .getServiceRegistry().getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_INSERT, this);
+    registry.appendListeners(EventType.POST_UPDATE, this);
+    registry.appendListeners(EventType.POST_DELETE, this);
+  }
+
+  /**
+   * teamId 는 팀이 없으면 null 이다.
+   */
+  protected abstract void memberAdded(Long teamId, int age);
+
+  protected abstract void memberRemoved(Long teamId, int age);
+
+  /**
+   * 변경 전 상태를 모르는 update (detached merge 등). 현재 팀만 알 수 있다.
+   */
+  protected abstract void memberChangedWithoutOldState(Long teamId);
+
+  protected void teamAdded(Long teamId) {
+  }
+
+  protected void teamRemoved(Long teamId) {
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    if (event.getEntity() instanceof Team team) {
+      teamAdded(team.getId());
+    } else if (event.getEntity() instanceof Member member) {
+      memberAdded(teamIdOf(member.getTeam()), member.getAge());
+    }
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    if (!(event.getEntity() instanceof Member member)
+        || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    Long newTeamId = teamIdOf(member.getTeam());
+    Object[] oldState = event.getOldState();
+    if (oldState == null) {
+      memberChangedWithoutOldState(newTeamId);
+      return;
+    }
+    EntityPersister persister = event.getPersister();
+    int oldAge = (Integer) oldState[persister.getPropertyIndex("age")];
+    Long oldTeamId = teamIdOf(oldState[persister.getPropertyIndex("team")]);
+    int newAge = member.getAge();
+    if (oldAge == newAge && Objects.equals(oldTeamId, newTeamId)) {
+      return;
+    }
+    memberRemoved(oldTeamId, oldAge);
+    memberAdded(newTeamId, newAge);
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    if (event.getEntity() instanceof Team team) {
+      teamRemoved(team.getId());
+    } else if (event.getEntity() instanceof Member) {
+      EntityPersister persister = event.getPersister();
+      Object[] state = event.getDeletedState();
+      memberRemoved(teamIdOf(state[persister.getPropertyIndex("team")]),
+          (Integer) state[persister.getPropertyIndex("age")]);
+    }
+  }
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return false;
+  }
+
+  private static Long teamIdOf(Object team) {
+    if (team == null) {
+      return null;
+    }
+    if (team instanceof HibernateProxy proxy) {
+      return (Long) proxy.getHibernateLazyInitializer().getIdentifier();
+    }
+    return ((Team) team).getId();
+  }
+}
@@ -5,14 +5,33 @@ import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.dao.support.InListPadding;
+import study.querydsl.dao.support.PrefixRange;
+import study.querydsl.dao.support.StatelessQueryExecutor;
+import study.querydsl.dto.MemberColumns;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberDto;
@@ -23,12 +42,25 @@ import study.querydsl.entity.QMember;
 @Repository
 public class MemberJpaRepository {
 
+  private static final int STREAM_FETCH_SIZE = 500;
+  private static final int IN_CHUNK_SIZE = 512;
+
   private final EntityManager em;
   private final JPAQueryFactory queryFactory;
+  private final MemberSearchQueryRegistry searchQueryRegistry;
+  private final StatelessQueryExecutor statelessQueryExecutor;
+  private final UsernameNgramIndex usernameNgramIndex;
+  private final TableVersions tableVersions;
 
-  public MemberJpaRepository(EntityManager em) {
+  public MemberJpaRepository(EntityManager em, MemberSearchQueryRegistry searchQueryRegistry,
+      StatelessQueryExecutor statelessQueryExecutor, UsernameNgramIndex usernameNgramIndex,
+      TableVersions tableVersions) {
     this.em = em;
     this.queryFactory = new JPAQueryFactory(em);
+    this.searchQueryRegistry = searchQueryRegistry;
+    this.statelessQueryExecutor = statelessQueryExecutor;
+    this.usernameNgramIndex = usernameNgramIndex;
+    this.tableVersions = tableVersions;
   }
 
   public void save(Member member) {
@@ -40,6 +72,27 @@ public class MemberJpaRepository {
     return Optional.ofNullable(findMember);
   }
 
+  /**
+   * id 목록으로 한 번에 조회한다. IN 절은 IN_CHUNK_SIZE 개씩 나누고 2의 거듭제곱 개로 채워서
+   * id 개수가 달라도 SQL 모양이 몇 개로 고정된다. 결과는 ids 순서(중복 제거)를 따르고 없는 id 는 빠진다.
+   * team 은 지연 로딩이지만 Team 의 @BatchSize 로 여러 프록시를 IN 쿼리 하나로 초기화한다.
+   */
+  public List<Member> findAllByIds(Collection<Long> ids) {
+    List<Long> distinctIds = InListPadding.distinct(ids);
+    Map<Long, Member> found = new HashMap<>(distinctIds.size() * 2);
+    for (List<Long> chunk : InListPadding.paddedChunks(distinctIds, IN_CHUNK_SIZE)) {
+      queryFactory
+          .selectFrom(member)
+          .where(member.id.in(chunk))
+          .fetch()
+          .forEach(m -> found.put(m.getId(), m));
+    }
+    return distinctIds.stream()
+        .map(found::get)
+        .filter(Objects::nonNull)
+        .toList();
+  }
+
   public List<Member> findAll() {
     return em.createQuery(
         "select m from Member m", Member.class
@@ -53,11 +106,17 @@ public class MemberJpaRepository {
         .fetch();
   }
 
+  // idx_member_username 으로 찾고 결과(id 목록)는 쿼리 캐시에 둔다. 엔티티는 Member 2차 캐시에서 읽는다.
+  // member 테이블이 바뀌면 Hibernate 가 해당 쿼리 캐시 결과를 버린다.
+  // replica 가 마지막 변경을 따라잡기 전에는 변경 전 행을 읽을 수 있으므로 캐시에서 읽기만 하고 넣지 않는다.
+  @Transactional(readOnly = true)
   public List<Member> findByUsername(String username) {
+    CacheMode cacheMode = tableVersions.current().replicated() ? CacheMode.NORMAL : CacheMode.GET;
     return em.createQuery(
-            "select m from Member m where m.username = :username", Member.class
-        )
+            "select m from Member m where m.username = :username", Member.class)
         .setParameter("username", username)
+        .setHint(HibernateHints.HINT_CACHEABLE, true)
+        .setHint(HibernateHints.HINT_CACHE_MODE, cacheMode)
         .getResultList();
   }
 
@@ -69,12 +128,43 @@ public class MemberJpaRepository {
         .fetch();
   }
 
+  // 아래 ReadOnly 버전은 StatelessSession 으로 조회한다.
+  // 영속성 컨텍스트에 올리지 않으므로 스냅샷/flush 비용이 없고, 결과는 준영속 엔티티다. (team 지연 로딩 불가)
+  public List<Member> findAllReadOnly() {
+    return statelessQueryExecutor.fetch("select m from Member m", Member.class, Map.of());
+  }
+
+  public List<Member> findAll_QueryDslReadOnly() {
+    return statelessQueryExecutor.fetch(queryFactory
+        .selectFrom(member));
+  }
+
+  public List<Member> findByUsernameReadOnly(String username) {
+    return statelessQueryExecutor.fetch("select m from Member m where m.username = :username",
+        Member.class, Map.of("username", username));
+  }
+
+  public List<Member> findByUsername_QueryDlsReadOnly(String username) {
+    return statelessQueryExecutor.fetch(queryFactory
+        .selectFrom(member)
+        .where(member.username.eq(username)));
+  }
+
+  @Transactional(readOnly = true)
   public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
     BooleanBuilder builder = new BooleanBuilder();
     if (hasText(condition.getUsername())) {
       builder.and(member.username.eq(condition.getUsername()));
     }
 
+    if (hasText(condition.getUsernamePrefix())) {
+      builder.and(PrefixRange.startsWith(member.username, condition.getUsernamePrefix()));
+    }
+
+    if (hasText(condition.getUsernameContains())) {
+      builder.and(usernameNgramIndex.usernameContains(condition.getUsernameContains()));
+    }
+
     if (hasText(condition.getTeamName())) {
       builder.and(team.name.eq(condition.getTeamName()));
     }
@@ -101,8 +191,24 @@ public class MemberJpaRepository {
         .fetch();
   }
 
+  // 조건 조합별로 미리 만들어 둔 JPQL 에 파라미터만 바인딩한다. (MemberSearchQueryRegistry 참고)
+  // usernamePrefix / usernameContains 는 미리 만들어 둔 모양이 없으므로 Querydsl 로 만든다.
+  @Transactional(readOnly = true)
   public List<MemberTeamDto> search(MemberSearchCondition condition) {
-    return queryFactory
+    if (MemberSearchQueryRegistry.supports(condition)) {
+      return searchQueryRegistry.search(condition);
+    }
+    return searchByBuilder(condition);
+  }
+
+  /**
+   * search 와 같은 조건/프로젝션을 List 로 모으지 않고 한 건씩 consumer 에 넘긴다.
+   * JDBC fetch size 단위로 커서를 읽으므로 결과 건수와 관계없이 메모리 사용량이 일정하다.
+   * 커서가 열려 있는 동안 커넥션이 필요해서 트랜잭션 안에서 실행한다.
+   */
+  @Transactional(readOnly = true)
+  public void searchStream(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+    try (Stream<MemberTeamDto> stream = queryFactory
         .select(new QMemberTeamDto(
             member.id.as("memberId"),
             member.username,
@@ -114,17 +220,147 @@ public class MemberJpaRepository {
         .leftJoin(member.team, team)
         .where(
             usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
             teamNameEq(condition.getTeamName()),
             ageGeo(condition.getAgeGoe()),
             ageLoe(condition.getAgeLoe())
         )
-        .fetch();
+        .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+        .setHint(HibernateHints.HINT_READ_ONLY, true)
+        .stream()) {
+      stream.forEach(consumer);
+    }
+  }
+
+  /**
+   * search 와 같은 조건/결과를 MemberColumns 에 열 단위로 바로 쌓는다. 행마다 MemberTeamDto 를 만들지 않는다.
+   */
+  @Transactional(readOnly = true)
+  public MemberColumns searchColumns(MemberSearchCondition condition) {
+    MemberColumns columns = new MemberColumns();
+    try (Stream<Tuple> stream = queryFactory
+        .select(member.id, member.username, member.age, team.id, team.name)
+        .from(member)
+        .leftJoin(member.team, team)
+        .where(
+            usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
+            teamNameEq(condition.getTeamName()),
+            ageGeo(condition.getAgeGoe()),
+            ageLoe(condition.getAgeLoe())
+        )
+        .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+        .setHint(HibernateHints.HINT_READ_ONLY, true)
+        .stream()) {
+      stream.forEach(row -> columns.add(row.get(member.id), row.get(member.username),
+          row.get(member.age), row.get(team.id), row.get(team.name)));
+    }
+    return columns;
+  }
+
+  /**
+   * 내부 집계용 스캔. member 의 (id, team_id, age) 를 JDBC ResultSet 에서 바로 buffer 에 채우고,
+   * buffer 가 찰 때마다(그리고 마지막에) batchConsumer 를 호출한다. 행마다 엔티티/DTO/박싱된 값을 만들지 않는다.
+   * teamName 조건은 team 조인 대신 서브쿼리로 거른다. 팀이 없으면 teamId 는 {@link MemberColumnBuffer#NO_TEAM}.
+   */
+  @Transactional(readOnly = true)
+  public void scanColumns(MemberSearchCondition condition, MemberColumnBuffer buffer,
+      Consumer<MemberColumnBuffer> batchConsumer) {
+    StringBuilder sql = new StringBuilder(
+        "select m.member_id, m.team_id, m.age from member m where 1=1");
+    List<Object> parameters = new ArrayList<>(4);
+    if (hasText(condition.getUsername())) {
+      sql.append(" and m.username = ?");
+      parameters.add(condition.getUsername());
+    }
+    if (hasText(condition.getUsernamePrefix())) {
+      String upperBound = PrefixRange.upperBound(condition.getUsernamePrefix());
+      sql.append(" and m.username >= ?");
+      parameters.add(condition.getUsernamePrefix());
+      if (upperBound != null) {
+        sql.append(" and m.username < ?");
+        parameters.add(upperBound);
+      } else {
+        sql.append(" and m.username like ? escape '!'");
+        parameters.add(escapeLike(condition.getUsernamePrefix()) + "%");
+      }
+    }
+    if (hasText(condition.getUsernameContains())) {
+      List<Long> candidates = usernameNgramIndex.candidates(condition.getUsernameContains());
+      if (candidates != null) {
+        if (candidates.isEmpty()) {
+          return;
+        }
+        sql.append(" and m.member_id in (")
+            .append(String.join(",", Collections.nCopies(candidates.size(), "?")))
+            .append(')');
+        parameters.addAll(candidates);
+      }
+      sql.append(" and m.username like ? escape '!'");
+      parameters.add("%" + escapeLike(condition.getUsernameContains()) + "%");
+    }
+    if (hasText(condition.getTeamName())) {
+      sql.append(" and m.team_id in (select t.id from team t where t.name = ?)");
+      parameters.add(condition.getTeamName());
+    }
+    if (condition.getAgeGoe() != null) {
+      sql.append(" and m.age >= ?");
+      parameters.add(condition.getAgeGoe());
+    }
+    if (condition.getAgeLoe() != null) {
+      sql.append(" and m.age <= ?");
+      parameters.add(condition.getAgeLoe());
+    }
+
+    Session session = em.unwrap(Session.class);
+    // JDBC 로 직접 읽으므로 auto flush 가 없다. 같은 트랜잭션의 변경이 보이도록 먼저 내보낸다.
+    if (session.isDirty()) {
+      session.flush();
+    }
+    session.doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+        statement.setFetchSize(buffer.capacity());
+        for (int i = 0; i < parameters.size(); i++) {
+          statement.setObject(i + 1, parameters.get(i));
+        }
+        buffer.clear();
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            // getLong 은 null 이면 0 을 돌려준다. (= NO_TEAM)
+            buffer.add(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+            if (buffer.isFull()) {
+              batchConsumer.accept(buffer);
+              buffer.clear();
+            }
+          }
+        }
+        if (buffer.size() > 0) {
+          batchConsumer.accept(buffer);
+          buffer.clear();
+        }
+      }
+    });
+  }
+
+  private static String escapeLike(String value) {
+    return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
   }
 
   private BooleanExpression usernameEq(String username) {
     return !hasText(username) ? null : member.username.eq(username);
   }
 
+  private BooleanExpression usernamePrefix(String usernamePrefix) {
+    return !hasText(usernamePrefix) ? null
+        : PrefixRange.startsWith(member.username, usernamePrefix);
+  }
+
+  private BooleanExpression usernameContains(String usernameContains) {
+    return usernameNgramIndex.usernameContains(usernameContains);
+  }
+
   private BooleanExpression teamNameEq(String teamName) {
     return !hasText(teamName) ? null : team.name.eq(teamName);
 
@@ -3,6 +3,8 @@ package study.querydsl.dao;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dao.support.KeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -14,4 +16,11 @@ public interface MemberRepositoryCustom {
 
   Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
 
+  KeysetPage<MemberTeamDto> searchKeyset(MemberSearchCondition condition, String cursor, int size,
+      Sort sort);
+
+  long bulkAddAge(MemberSearchCondition condition, int delta);
+
+  long bulkDelete(MemberSearchCondition condition);
+
 }
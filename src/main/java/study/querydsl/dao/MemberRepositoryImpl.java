@@ -4,30 +4,76 @@ import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.support.PageableUtils;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dao.support.CountQueryExecutor;
+import study.querydsl.dao.support.KeysetCursor;
+import study.querydsl.dao.support.KeysetPage;
+import study.querydsl.dao.support.PrefixRange;
+import study.querydsl.dao.support.Querydsl4RepositorySupport;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
 
-public class MemberRepositoryImpl implements MemberRepositoryCustom{
+public class MemberRepositoryImpl extends Querydsl4RepositorySupport implements
+    MemberRepositoryCustom {
 
   private final JPAQueryFactory queryFactory;
+  private final MemberCountCache countCache;
+  private final CountQueryExecutor countQueryExecutor;
+  private final TeamDictionary teamDictionary;
+  private final boolean teamDictionaryEnabled;
+  private final int bulkChunkSize;
+  private final TableVersions tableVersions;
+  private final TeamStatsRepository teamStatsRepository;
+  private final AgeHistogram ageHistogram;
+  private final UsernameNgramIndex usernameNgramIndex;
 
-  public MemberRepositoryImpl(EntityManager em) {
+  public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache,
+      CountQueryExecutor countQueryExecutor, TeamDictionary teamDictionary,
+      TableVersions tableVersions, TeamStatsRepository teamStatsRepository,
+      AgeHistogram ageHistogram, UsernameNgramIndex usernameNgramIndex,
+      @Value("${member.search.team-dictionary:false}") boolean teamDictionaryEnabled,
+      @Value("${member.bulk.chunk-size:1000}") int bulkChunkSize) {
+    super(Member.class);
     this.queryFactory = new JPAQueryFactory(em);
+    this.countCache = countCache;
+    this.countQueryExecutor = countQueryExecutor;
+    this.teamDictionary = teamDictionary;
+    this.teamDictionaryEnabled = teamDictionaryEnabled;
+    this.bulkChunkSize = bulkChunkSize;
+    this.tableVersions = tableVersions;
+    this.teamStatsRepository = teamStatsRepository;
+    this.ageHistogram = ageHistogram;
+    this.usernameNgramIndex = usernameNgramIndex;
   }
 
   @Override
+  @Transactional(readOnly = true)
   public List<MemberTeamDto> search(MemberSearchCondition condition) {
+    if (teamDictionaryEnabled) {
+      return searchWithoutJoin(condition);
+    }
     return queryFactory
         .select(new QMemberTeamDto(
             member.id.as("memberId"),
@@ -40,6 +86,8 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         .leftJoin(member.team, team)
         .where(
             usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
             teamNameEq(condition.getTeamName()),
             ageGeo(condition.getAgeGoe()),
             ageLoe(condition.getAgeLoe())
@@ -48,9 +96,11 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
   }
 
   // deprecated 후 아래의 Complex 메서드로 사용하면 된다.
+  // count 쿼리는 content 쿼리에서 자동으로 만든다. (teamName 조건이 없으면 team 조인도 빠진다)
   @Override
+  @Transactional(readOnly = true)
   public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-    List<MemberTeamDto> results = queryFactory
+    return applyPagination(pageable, query -> query
         .select(new QMemberTeamDto(
             member.id.as("memberId"),
             member.username,
@@ -62,22 +112,24 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         .leftJoin(member.team, team)
         .where(
             usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
             teamNameEq(condition.getTeamName()),
             ageGeo(condition.getAgeGoe()),
             ageLoe(condition.getAgeLoe())
-        )
-        .offset(pageable.getOffset())
-        .limit(pageable.getPageSize())
-        .fetch();
-
-    return null;
+        ));
   }
 
   // 아래 질문 참고
   // https://www.inflearn.com/course/lecture?courseSlug=querydsl-%EC%8B%A4%EC%A0%84&unitId=30151&category=questionDetail&tab=community&q=806452
   @Override
+  @Transactional(readOnly = true)
   public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-    List<MemberTeamDto> results = queryFactory
+    if (teamDictionaryEnabled) {
+      return searchPageWithoutJoin(condition, pageable);
+    }
+
+    JPAQuery<MemberTeamDto> contentQuery = queryFactory
         .select(new QMemberTeamDto(
             member.id.as("memberId"),
             member.username,
@@ -89,13 +141,14 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         .leftJoin(member.team, team)
         .where(
             usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
             teamNameEq(condition.getTeamName()),
             ageGeo(condition.getAgeGoe()),
             ageLoe(condition.getAgeLoe())
         )
         .offset(pageable.getOffset())
-        .limit(pageable.getPageSize())
-        .fetch();
+        .limit(pageable.getPageSize());
 
     JPAQuery<Long> countQuery = queryFactory
         .select(member.count())
@@ -103,19 +156,243 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         .leftJoin(member.team, team)
         .where(
             usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
             teamNameEq(condition.getTeamName()),
             ageGeo(condition.getAgeGoe()),
             ageLoe(condition.getAgeLoe())
         );
 
-    return PageableExecutionUtils.getPage(results, pageable, countQuery::fetchOne);
+    return page(condition, pageable, contentQuery::fetch, countQuery);
+  }
+
+  // team 조인 없이 member 테이블만 읽는다. teamName 조건은 team_id 조건으로 바꾸고 teamName 은 사전에서 채운다.
+  private List<MemberTeamDto> searchWithoutJoin(MemberSearchCondition condition) {
+    TeamDictionary.Snapshot teams = teamDictionary.get();
+    List<Long> teamIds = teamIdsOf(teams, condition.getTeamName());
+    if (teamIds != null && teamIds.isEmpty()) {
+      return List.of();
+    }
+    return toMemberTeamDtos(memberOnlyQuery(condition, teamIds).fetch(), teams);
+  }
+
+  private Page<MemberTeamDto> searchPageWithoutJoin(MemberSearchCondition condition,
+      Pageable pageable) {
+    TeamDictionary.Snapshot teams = teamDictionary.get();
+    List<Long> teamIds = teamIdsOf(teams, condition.getTeamName());
+    if (teamIds != null && teamIds.isEmpty()) {
+      return Page.empty(pageable);
+    }
+
+    JPAQuery<Tuple> contentQuery = memberOnlyQuery(condition, teamIds)
+        .offset(pageable.getOffset())
+        .limit(pageable.getPageSize());
+
+    JPAQuery<Long> countQuery = queryFactory
+        .select(member.count())
+        .from(member)
+        .where(
+            usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
+            teamIdIn(teamIds),
+            ageGeo(condition.getAgeGoe()),
+            ageLoe(condition.getAgeLoe())
+        );
+
+    return page(condition, pageable, () -> toMemberTeamDtos(contentQuery.fetch(), teams),
+        countQuery);
+  }
+
+  private JPAQuery<Tuple> memberOnlyQuery(MemberSearchCondition condition, List<Long> teamIds) {
+    return queryFactory
+        .select(member.id, member.username, member.age, member.team.id)
+        .from(member)
+        .where(
+            usernameEq(condition.getUsername()),
+            usernamePrefix(condition.getUsernamePrefix()),
+            usernameContains(condition.getUsernameContains()),
+            teamIdIn(teamIds),
+            ageGeo(condition.getAgeGoe()),
+            ageLoe(condition.getAgeLoe())
+        );
+  }
+
+  private List<MemberTeamDto> toMemberTeamDtos(List<Tuple> rows, TeamDictionary.Snapshot teams) {
+    List<MemberTeamDto> result = new ArrayList<>(rows.size());
+    for (Tuple row : rows) {
+      Long teamId = row.get(member.team.id);
+      result.add(new MemberTeamDto(row.get(member.id), row.get(member.username),
+          row.get(member.age), teamId, teams.nameOf(teamId)));
+    }
+    return result;
+  }
+
+  // teamName 조건이 없으면 null, 있는데 해당 팀이 없으면 빈 리스트
+  private List<Long> teamIdsOf(TeamDictionary.Snapshot teams, String teamName) {
+    return hasText(teamName) ? teams.idsOf(teamName) : null;
+  }
+
+  private BooleanExpression teamIdIn(List<Long> teamIds) {
+    if (teamIds == null) {
+      return null;
+    }
+    return teamIds.size() == 1 ? member.team.id.eq(teamIds.get(0)) : member.team.id.in(teamIds);
+  }
+
+  private Page<MemberTeamDto> page(MemberSearchCondition condition, Pageable pageable,
+      Supplier<List<MemberTeamDto>> content, JPAQuery<Long> countQuery) {
+    if (countQueryExecutor.isConcurrent()) {
+      return pageConcurrently(condition, pageable, content, countQuery);
+    }
+
+    List<MemberTeamDto> results = content.get();
+
+    // count 쿼리는 마지막 페이지가 아닐 때만, 그리고 캐시 miss 일 때만 실행된다.
+    return PageableExecutionUtils.getPage(results, pageable,
+        () -> countCache.get(condition, countQuery::fetchOne));
 //    return new PageImpl<>(results, pageable, total);
   }
 
+  // count 쿼리를 다른 스레드(커넥션)에서 먼저 시작해 두고 content 를 조회한다.
+  // content 만으로 total 을 알 수 있는 마지막 페이지라면 진행 중인 count 는 취소한다.
+  // 취소는 스레드 인터럽트뿐이라 DB 의 count 는 쿼리 타임아웃까지 계속될 수 있다. (CountQueryExecutor 참고)
+  private Page<MemberTeamDto> pageConcurrently(MemberSearchCondition condition,
+      Pageable pageable, Supplier<List<MemberTeamDto>> content, JPAQuery<Long> countQuery) {
+    JPAQuery<Long> timedCountQuery = countQueryExecutor.applyTimeout(countQuery);
+    Future<Long> total = countQueryExecutor.submit(
+        () -> countCache.get(condition, timedCountQuery::fetchOne));
+    try {
+      List<MemberTeamDto> results = content.get();
+      return PageableExecutionUtils.getPage(results, pageable,
+          () -> countQueryExecutor.await(total));
+    } finally {
+      if (!total.isDone()) {
+        total.cancel(true);
+      }
+    }
+  }
+
+  // offset 대신 (정렬 키, member.id) 로 seek 하므로 뒤쪽 페이지도 앞쪽 페이지와 비용이 같다.
+  // 정렬 키는 하나만 받는다. (id 가 항상 두 번째 키로 붙는다)
+  @Override
+  @Transactional(readOnly = true)
+  public KeysetPage<MemberTeamDto> searchKeyset(MemberSearchCondition condition, String cursor,
+      int size, Sort sort) {
+    if (sort != null && sort.stream().count() > 1) {
+      throw new IllegalArgumentException("Keyset pagination supports a single sort order: " + sort);
+    }
+    Sort.Order sortOrder = sort == null ? null : sort.stream().findFirst().orElse(null);
+    OrderSpecifier<?> orderSpecifier = keysetOrder(sortOrder);
+    return applyKeysetPagination(KeysetCursor.decode(cursor), size, member.id, orderSpecifier,
+        query -> query
+            .select(new QMemberTeamDto(
+                member.id.as("memberId"),
+                member.username,
+                member.age,
+                team.id.as("teamId"),
+                team.name.as("teamName")
+            ))
+            .from(member)
+            .leftJoin(member.team, team)
+            .where(
+                usernameEq(condition.getUsername()),
+                usernamePrefix(condition.getUsernamePrefix()),
+                usernameContains(condition.getUsernameContains()),
+                teamNameEq(condition.getTeamName()),
+                ageGeo(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+            ),
+        dto -> KeysetCursor.of(dto.getMemberId(), keysetValue(sortOrder, dto)));
+  }
+
+  // chunk 마다 별도 트랜잭션으로 커밋된다. (Querydsl4RepositorySupport.bulkUpdate 참고)
+  @Override
+  public long bulkAddAge(MemberSearchCondition condition, int delta) {
+    List<Long> teamIds = teamIdsOf(teamDictionary.get(), condition.getTeamName());
+    if (teamIds != null && teamIds.isEmpty()) {
+      return 0;
+    }
+    try {
+      return bulkUpdate(member, member.id, bulkWhere(condition, teamIds), bulkChunkSize,
+          update -> update.set(member.age, member.age.add(delta)));
+    } finally {
+      afterBulkChange();
+    }
+  }
+
+  @Override
+  public long bulkDelete(MemberSearchCondition condition) {
+    List<Long> teamIds = teamIdsOf(teamDictionary.get(), condition.getTeamName());
+    if (teamIds != null && teamIds.isEmpty()) {
+      return 0;
+    }
+    try {
+      return bulkDelete(member, member.id, bulkWhere(condition, teamIds), bulkChunkSize);
+    } finally {
+      afterBulkChange();
+      // 지워진 id 가 후보로 남아도 결과는 틀리지 않지만 색인에서 비운다.
+      usernameNgramIndex.invalidate();
+    }
+  }
+
+  // bulk 연산은 엔티티 리스너/이벤트를 거치지 않으므로 count 캐시, 테이블 버전, 팀 통계, 나이 분포를 직접 갱신한다.
+  // 실패해도 앞 chunk 는 이미 커밋되었으므로 항상 실행한다.
+  private void afterBulkChange() {
+    countCache.invalidateAll();
+    teamStatsRepository.rebuild();
+    ageHistogram.invalidate();
+    tableVersions.increment(TableVersions.Table.MEMBER);
+  }
+
+  // update/delete 에는 조인을 쓸 수 없으므로 teamName 대신 사전에서 찾은 team_id 로 거른다.
+  private Predicate bulkWhere(MemberSearchCondition condition, List<Long> teamIds) {
+    return ExpressionUtils.allOf(
+        usernameEq(condition.getUsername()),
+        usernamePrefix(condition.getUsernamePrefix()),
+        usernameContains(condition.getUsernameContains()),
+        teamIdIn(teamIds),
+        ageGeo(condition.getAgeGoe()),
+        ageLoe(condition.getAgeLoe())
+    );
+  }
+
+  private OrderSpecifier<?> keysetOrder(Sort.Order sortOrder) {
+    if (sortOrder == null) {
+      return null;
+    }
+    Order direction = sortOrder.isAscending() ? Order.ASC : Order.DESC;
+    switch (sortOrder.getProperty()) {
+      case "username":
+        return new OrderSpecifier<>(direction, member.username);
+      case "age":
+        return new OrderSpecifier<>(direction, member.age);
+      default:
+        throw new IllegalArgumentException(
+            "Unsupported keyset sort property: " + sortOrder.getProperty());
+    }
+  }
+
+  private Object keysetValue(Sort.Order sortOrder, MemberTeamDto dto) {
+    if (sortOrder == null) {
+      return null;
+    }
+    return "age".equals(sortOrder.getProperty()) ? dto.getAge() : dto.getUsername();
+  }
+
   private BooleanExpression usernameEq(String username) {
     return !hasText(username) ? null : member.username.eq(username);
   }
 
+  private BooleanExpression usernamePrefix(String usernamePrefix) {
+    return !hasText(usernamePrefix) ? null
+        : PrefixRange.startsWith(member.username, usernamePrefix);
+  }
+
+  private BooleanExpression usernameContains(String usernameContains) {
+    return usernameNgramIndex.usernameContains(usernameContains);
+  }
+
   private BooleanExpression teamNameEq(String teamName) {
     return !hasText(teamName) ? null : team.name.eq(teamName);
 
@@ -0,0 +1,160 @@
+package study.querydsl.dao;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+/**
+ * MemberSearchCondition 의 네 가지 선택 조건(username, teamName, ageGoe, ageLoe) 조합으로 나올 수 있는
+ * 16가지 search 쿼리 모양을 미리 JPQL 로 만들어 둔다.
+ * 요청마다 Querydsl 메타데이터를 만들고 직렬화하지 않고 파라미터만 바인딩하며,
+ * JPQL 문자열이 항상 같으므로 Hibernate 의 쿼리 plan 캐시를 그대로 탄다.
+ * 애플리케이션 기동 직후(ready 전)에 16개 모양을 모두 한 번씩 컴파일해 둔다.
+ * usernamePrefix / usernameContains 가 있는 조건은 다루지 않는다. ({@link #supports} 참고)
+ */
+@Slf4j
+@Component
+public class MemberSearchQueryRegistry {
+
+  private static final Param<String> USERNAME = new Param<>(String.class, "username");
+  private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+  private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+  private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+
+  private static final int USERNAME_BIT = 1;
+  private static final int TEAM_NAME_BIT = 1 << 1;
+  private static final int AGE_GOE_BIT = 1 << 2;
+  private static final int AGE_LOE_BIT = 1 << 3;
+  private static final int SHAPE_COUNT = 1 << 4;
+
+  private static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+      member.id.as("memberId"),
+      member.username,
+      member.age,
+      team.id.as("teamId"),
+      team.name.as("teamName")
+  );
+
+  private final EntityManager em;
+  private final EntityManagerFactory emf;
+  private final Shape[] shapes = new Shape[SHAPE_COUNT];
+
+  public MemberSearchQueryRegistry(EntityManager em, EntityManagerFactory emf) {
+    this.em = em;
+    this.emf = emf;
+    for (int mask = 0; mask < SHAPE_COUNT; mask++) {
+      shapes[mask] = compile(mask);
+    }
+  }
+
+  public List<MemberTeamDto> search(MemberSearchCondition condition) {
+    if (!supports(condition)) {
+      throw new IllegalArgumentException("Unsupported search condition: " + condition);
+    }
+    int mask = maskOf(condition);
+    Map<ParamExpression<?>, Object> params = new HashMap<>(4);
+    if ((mask & USERNAME_BIT) != 0) {
+      params.put(USERNAME, condition.getUsername());
+    }
+    if ((mask & TEAM_NAME_BIT) != 0) {
+      params.put(TEAM_NAME, condition.getTeamName());
+    }
+    if ((mask & AGE_GOE_BIT) != 0) {
+      params.put(AGE_GOE, condition.getAgeGoe());
+    }
+    if ((mask & AGE_LOE_BIT) != 0) {
+      params.put(AGE_LOE, condition.getAgeLoe());
+    }
+
+    Shape shape = shapes[mask];
+    Query query = em.createQuery(shape.jpql);
+    JPAUtil.setConstants(query, shape.constants, params);
+
+    List<?> rows = query.getResultList();
+    List<MemberTeamDto> result = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      result.add(PROJECTION.newInstance((Object[]) row));
+    }
+    return result;
+  }
+
+  @EventListener(ApplicationStartedEvent.class)
+  public void warmUp() {
+    long start = System.nanoTime();
+    EntityManager warmUpEm = emf.createEntityManager();
+    try {
+      for (Shape shape : shapes) {
+        warmUpEm.createQuery(shape.jpql);
+      }
+    } finally {
+      warmUpEm.close();
+    }
+    log.info("warmed up {} member search query shapes in {} ms", shapes.length,
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  // 접두사 범위의 위쪽 경계와 n-gram 후보 id 목록은 값에 따라 쿼리 모양이 달라지므로 미리 만들어 둘 수 없다.
+  public static boolean supports(MemberSearchCondition condition) {
+    return !hasText(condition.getUsernamePrefix()) && !hasText(condition.getUsernameContains());
+  }
+
+  String jpql(MemberSearchCondition condition) {
+    return shapes[maskOf(condition)].jpql;
+  }
+
+  private static int maskOf(MemberSearchCondition condition) {
+    return (hasText(condition.getUsername()) ? USERNAME_BIT : 0)
+        | (hasText(condition.getTeamName()) ? TEAM_NAME_BIT : 0)
+        | (condition.getAgeGoe() != null ? AGE_GOE_BIT : 0)
+        | (condition.getAgeLoe() != null ? AGE_LOE_BIT : 0);
+  }
+
+  private static Shape compile(int mask) {
+    JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+        .select(PROJECTION)
+        .from(member)
+        .leftJoin(member.team, team)
+        .where(
+            (mask & USERNAME_BIT) != 0 ? member.username.eq(USERNAME) : null,
+            (mask & TEAM_NAME_BIT) != 0 ? team.name.eq(TEAM_NAME) : null,
+            (mask & AGE_GOE_BIT) != 0 ? member.age.goe(AGE_GOE) : null,
+            (mask & AGE_LOE_BIT) != 0 ? member.age.loe(AGE_LOE) : null
+        );
+
+    JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+    serializer.serialize(query.getMetadata(), false, null);
+    return new Shape(serializer.toString(), List.copyOf(serializer.getConstants()));
+  }
+
+  private static final class Shape {
+
+    private final String jpql;
+    private final List<Object> constants;
+
+    private Shape(String jpql, List<Object> constants) {
+      this.jpql = jpql;
+      this.constants = constants;
+    }
+  }
+}
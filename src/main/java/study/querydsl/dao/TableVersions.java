@@ -0,0 +1,91 @@
+package study.querydsl.dao;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.datasource.ReplicationWatermark;
+import study.querydsl.entity.Team;
+
+/**
+ * member / team 테이블의 버전 번호. 데이터가 바뀔 때마다 단조 증가하므로 조회 결과의 ETag 에 넣는다.
+ *
+ * Member / Team 변경은 {@link TableVersionsListener} 로 받는다. 트랜잭션 안의 변경은 커밋된 뒤에 올리고(롤백이면 그대로),
+ * 트랜잭션 밖의 변경은 바로 올린다. bulk 연산은 엔티티 이벤트가 없으므로 직접 {@link #increment} 를 호출한다.
+ * 애플리케이션을 거치지 않은 변경(직접 SQL 등)은 알 수 없다.
+ *
+ * replica 를 쓰면 버전이 오른 뒤에도 replica 에서 읽은 응답은 변경 전 데이터일 수 있다.
+ * 그래서 마지막 변경 시각도 함께 두고, replica 가 그 시각을 따라잡았는지를 {@link Snapshot#replicated()} 로 알려준다.
+ */
+@Component
+public class TableVersions {
+
+  public enum Table {
+    MEMBER, TEAM
+  }
+
+  // 재시작하면 카운터가 0 부터 다시 시작하므로 이전 프로세스의 버전과 겹치지 않게 함께 쓴다.
+  private final long epoch = System.currentTimeMillis();
+  private final AtomicLong memberVersion = new AtomicLong();
+  private final AtomicLong teamVersion = new AtomicLong();
+  private final Object pendingKey = new Object();
+  private final ReplicationWatermark replicationWatermark;
+  // 마지막으로 버전을 올린 시각. 버전보다 먼저 바꿔서 새 버전을 본 쪽은 이 시각도 보게 한다.
+  private volatile long changedAtMillis;
+
+  public TableVersions(ReplicationWatermark replicationWatermark) {
+    this.replicationWatermark = replicationWatermark;
+  }
+
+  public void onChange(Object entity) {
+    Table table = entity instanceof Team ? Table.TEAM : Table.MEMBER;
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      increment(table);
+      return;
+    }
+    pendingTables().add(table);
+  }
+
+  public void increment(Table table) {
+    changedAtMillis = System.currentTimeMillis();
+    (table == Table.TEAM ? teamVersion : memberVersion).incrementAndGet();
+  }
+
+  public Snapshot current() {
+    long member = memberVersion.get();
+    long team = teamVersion.get();
+    boolean replicated = ReplicationWatermark.includes(replicationWatermark.current(),
+        changedAtMillis);
+    return new Snapshot(epoch, member, team, replicated);
+  }
+
+  // 트랜잭션당 afterCompletion 콜백은 한 번만 등록하고 바뀐 테이블만 모아 둔다.
+  @SuppressWarnings("unchecked")
+  private Set<Table> pendingTables() {
+    Set<Table> pending = (Set<Table>) TransactionSynchronizationManager.getResource(pendingKey);
+    if (pending != null) {
+      return pending;
+    }
+    Set<Table> tables = EnumSet.noneOf(Table.class);
+    TransactionSynchronizationManager.bindResource(pendingKey, tables);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+        if (status == STATUS_COMMITTED) {
+          tables.forEach(TableVersions.this::increment);
+        }
+      }
+    });
+    return tables;
+  }
+
+  /**
+   * replicated 가 false 면 지금 replica 에서 읽은 결과가 이 버전보다 오래됐을 수 있다.
+   */
+  public record Snapshot(long epoch, long member, long team, boolean replicated) {
+
+  }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.dao;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Member / Team 엔티티 리스너. 변경을 컨텍스트의 {@link TableVersions} 에 전달한다.
+ * Hibernate 는 엔티티 리스너를 빈 팩토리로 새로 만들기 때문에 버전은 여기 두지 않고 주입받은 싱글톤에 둔다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TableVersionsListener {
+
+  private final TableVersions tableVersions;
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void onChange(Object entity) {
+    tableVersions.onChange(entity);
+  }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.dao;
+
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Session;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.datasource.ReplicationWatermark;
+
+/**
+ * Team id <-> name 사전. 팀은 수가 적고 거의 바뀌지 않으므로 메모리에 들고 있다가
+ * member 검색에서 team 조인 없이 teamName 조건을 team_id 조건으로 바꾸고 teamName 을 채우는 데 쓴다.
+ *
+ * Team 이 insert/update/delete 되면({@link TeamDictionaryInvalidator}) 바로 비우고,
+ * 트랜잭션이 끝날 때(커밋이든 롤백이든) 한 번 더 비워서 다음 조회 때 다시 읽는다.
+ * replica 가 마지막으로 비운 시각을 따라잡기 전에 읽은 사전은 새 팀이 빠져 있을 수 있으므로 캐시하지 않는다.
+ */
+@Component
+public class TeamDictionary {
+
+  private final EntityManager em;
+  private final JPAQueryFactory queryFactory;
+  private final ReplicationWatermark replicationWatermark;
+  private final Object registeredKey = new Object();
+
+  private long generation;
+  private long invalidatedAtMillis;
+  private volatile Snapshot snapshot;
+
+  // 엔티티 리스너(TeamDictionaryInvalidator)가 EntityManagerFactory 생성 중에 주입받으므로 EntityManager 는 지연 주입한다.
+  public TeamDictionary(@Lazy EntityManager em, ReplicationWatermark replicationWatermark) {
+    this.em = em;
+    this.queryFactory = new JPAQueryFactory(em);
+    this.replicationWatermark = replicationWatermark;
+  }
+
+  public Snapshot get() {
+    flushPendingChanges();
+    Snapshot current = snapshot;
+    return current != null ? current : load();
+  }
+
+  public void onTeamChange() {
+    invalidate();
+    if (TransactionSynchronizationManager.isSynchronizationActive()
+        && !TransactionSynchronizationManager.hasResource(registeredKey)) {
+      TransactionSynchronizationManager.bindResource(registeredKey, Boolean.TRUE);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(registeredKey);
+          invalidate();
+        }
+      });
+    }
+  }
+
+  public synchronized void invalidate() {
+    generation++;
+    invalidatedAtMillis = System.currentTimeMillis();
+    snapshot = null;
+  }
+
+  // 조인했다면 auto flush 로 보였을 같은 트랜잭션의 Team 변경이 사전에도 반영되도록 먼저 내보낸다.
+  private void flushPendingChanges() {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      Session session = em.unwrap(Session.class);
+      if (session.isDirty()) {
+        session.flush();
+      }
+    }
+  }
+
+  private Snapshot load() {
+    long startGeneration;
+    long invalidatedAt;
+    synchronized (this) {
+      startGeneration = generation;
+      invalidatedAt = invalidatedAtMillis;
+    }
+    long watermark = replicationWatermark.current();
+    List<Tuple> rows = queryFactory
+        .select(team.id, team.name)
+        .from(team)
+        .fetch();
+
+    Map<Long, String> names = new HashMap<>(rows.size() * 2);
+    Map<String, List<Long>> ids = new HashMap<>(rows.size() * 2);
+    for (Tuple row : rows) {
+      Long id = row.get(team.id);
+      String name = row.get(team.name);
+      names.put(id, name);
+      if (name != null) {
+        ids.computeIfAbsent(name, k -> new ArrayList<>(1)).add(id);
+      }
+    }
+    Snapshot loaded = new Snapshot(names, ids);
+    synchronized (this) {
+      // 읽는 동안 Team 이 바뀌었거나 replica 가 마지막 변경을 따라잡기 전이면 이번 호출에서만 쓰고 캐시하지 않는다.
+      if (generation == startGeneration
+          && ReplicationWatermark.includes(watermark, invalidatedAt)) {
+        snapshot = loaded;
+      }
+    }
+    return loaded;
+  }
+
+  public static final class Snapshot {
+
+    private final Map<Long, String> names;
+    private final Map<String, List<Long>> ids;
+
+    private Snapshot(Map<Long, String> names, Map<String, List<Long>> ids) {
+      this.names = names;
+      this.ids = ids;
+    }
+
+    public String nameOf(Long teamId) {
+      return teamId == null ? null : names.get(teamId);
+    }
+
+    public List<Long> idsOf(String teamName) {
+      return ids.getOrDefault(teamName, Collections.emptyList());
+    }
+  }
+}
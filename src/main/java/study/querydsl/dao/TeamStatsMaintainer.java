@@ -0,0 +1,157 @@
+package study.querydsl.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.hibernate.Session;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.TeamStats;
+
+/**
+ * team_stats 를 Member / Team 변경에 맞춰 증분 갱신한다.
+ *
+ * 변경은 {@link MemberEventListenerSupport} 로 받는다.
+ * 트랜잭션 동안 팀별 (회원 수, 나이 합) 변화량만 모아 두었다가 커밋 직전에 한 번 flush 하고 팀마다 update 한 번으로 반영한다. min/max 는 (team_id, age) 인덱스로 다시 읽는다.
+ * 그래서 커밋 전에는 같은 트랜잭션에서도 team_stats 에 아직 반영되지 않는다.
+ * bulk 연산은 이벤트가 없으므로 {@link TeamStatsRepository#rebuild()} 로 다시 만든다.
+ *
+ * 리스너는 이 빈이 만들어질 때 등록되므로 그 전에 다른 빈(local 프로필의 InitMember 등)이 넣은 데이터는 이벤트를 받지 못한다.
+ * 그래서 모든 싱글톤이 만들어진 뒤(웹 서버가 요청을 받기 전)에 한 번 전체를 다시 만든다.
+ */
+@Component
+public class TeamStatsMaintainer extends MemberEventListenerSupport implements
+    SmartInitializingSingleton {
+
+  private final EntityManager em;
+  private final TeamStatsRepository teamStatsRepository;
+  private final Object pendingKey = new Object();
+
+  public TeamStatsMaintainer(EntityManagerFactory emf, EntityManager em,
+      TeamStatsRepository teamStatsRepository) {
+    super(emf);
+    this.em = em;
+    this.teamStatsRepository = teamStatsRepository;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    teamStatsRepository.rebuild();
+  }
+
+  @Override
+  protected void memberAdded(Long teamId, int age) {
+    pending().add(teamId, 1, age);
+  }
+
+  @Override
+  protected void memberRemoved(Long teamId, int age) {
+    pending().add(teamId, -1, -age);
+  }
+
+  // 변경 전 상태를 모르면 현재 팀만 다시 센다.
+  @Override
+  protected void memberChangedWithoutOldState(Long teamId) {
+    if (teamId != null) {
+      pending().recountTeams.add(teamId);
+    }
+  }
+
+  @Override
+  protected void teamAdded(Long teamId) {
+    pending().createdTeams.add(teamId);
+  }
+
+  @Override
+  protected void teamRemoved(Long teamId) {
+    pending().deletedTeams.add(teamId);
+  }
+
+  private Pending pending() {
+    Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+    if (pending != null) {
+      return pending;
+    }
+    Pending created = new Pending();
+    TransactionSynchronizationManager.bindResource(pendingKey, created);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void beforeCommit(boolean readOnly) {
+        // 커밋 시점의 flush 에서 나올 이벤트까지 모은 뒤에 반영한다.
+        em.unwrap(Session.class).flush();
+        apply(created);
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+      }
+    });
+    return created;
+  }
+
+  private void apply(Pending pending) {
+    for (Long teamId : pending.createdTeams) {
+      if (!pending.deletedTeams.contains(teamId)) {
+        em.persist(new TeamStats(teamId));
+      }
+    }
+    em.flush();
+
+    for (Map.Entry<Long, long[]> delta : pending.deltas.entrySet()) {
+      Long teamId = delta.getKey();
+      if (pending.deletedTeams.contains(teamId) || pending.recountTeams.contains(teamId)) {
+        continue;
+      }
+      int updated = em.createQuery(
+              "update TeamStats s set s.memberCount = s.memberCount + :count,"
+                  + " s.ageSum = s.ageSum + :ageSum,"
+                  + " s.minAge = (select min(m.age) from Member m where m.team.id = :teamId),"
+                  + " s.maxAge = (select max(m.age) from Member m where m.team.id = :teamId)"
+                  + " where s.teamId = :teamId")
+          .setParameter("count", delta.getValue()[0])
+          .setParameter("ageSum", delta.getValue()[1])
+          .setParameter("teamId", teamId)
+          .executeUpdate();
+      if (updated == 0) {
+        // 이 기능 이전에 만들어진 팀은 행이 없으므로 처음 한 번 다시 센다.
+        pending.recountTeams.add(teamId);
+      }
+    }
+
+    for (Long teamId : pending.recountTeams) {
+      if (!pending.deletedTeams.contains(teamId)) {
+        teamStatsRepository.recount(teamId);
+      }
+    }
+
+    if (!pending.deletedTeams.isEmpty()) {
+      em.createQuery("delete from TeamStats s where s.teamId in :teamIds")
+          .setParameter("teamIds", pending.deletedTeams)
+          .executeUpdate();
+    }
+  }
+
+  private static final class Pending {
+
+    // teamId -> {회원 수 변화, 나이 합 변화}. 팀 없는 회원은 집계하지 않는다.
+    private final Map<Long, long[]> deltas = new HashMap<>();
+    private final Set<Long> createdTeams = new HashSet<>();
+    private final Set<Long> deletedTeams = new HashSet<>();
+    private final Set<Long> recountTeams = new HashSet<>();
+
+    void add(Long teamId, int count, int ageSum) {
+      if (teamId == null) {
+        return;
+      }
+      long[] delta = deltas.computeIfAbsent(teamId, k -> new long[2]);
+      delta[0] += count;
+      delta[1] += ageSum;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.dao;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+
+@Repository
+public class TeamStatsRepository {
+
+  private static final String INSERT_FROM_MEMBERS =
+      "insert into TeamStats (teamId, memberCount, ageSum, minAge, maxAge)"
+          + " select t.id, count(m), coalesce(sum(m.age), 0L), min(m.age), max(m.age)"
+          + " from Team t left join t.members m";
+
+  private final EntityManager em;
+  private final JPAQueryFactory queryFactory;
+
+  public TeamStatsRepository(EntityManager em) {
+    this.em = em;
+    this.queryFactory = new JPAQueryFactory(em);
+  }
+
+  // member 를 집계하지 않고 팀 수만큼의 team_stats 행만 읽는다.
+  public List<TeamStatsDto> findAll() {
+    return queryFactory
+        .select(new QTeamStatsDto(
+            teamStats.teamId,
+            team.name,
+            teamStats.memberCount,
+            teamStats.ageSum,
+            teamStats.minAge,
+            teamStats.maxAge
+        ))
+        .from(teamStats)
+        .join(team).on(team.id.eq(teamStats.teamId))
+        .orderBy(teamStats.teamId.asc())
+        .fetch();
+  }
+
+  /**
+   * member 테이블에서 전체를 다시 집계한다. 엔티티 이벤트를 거치지 않는 bulk 연산 뒤에 쓴다.
+   */
+  @Transactional
+  public void rebuild() {
+    em.createQuery("delete from TeamStats").executeUpdate();
+    em.createQuery(INSERT_FROM_MEMBERS + " group by t.id").executeUpdate();
+  }
+
+  // 팀 하나를 다시 센다. 호출한 쪽의 트랜잭션에서 실행된다.
+  void recount(Long teamId) {
+    em.createQuery("delete from TeamStats s where s.teamId = :teamId")
+        .setParameter("teamId", teamId)
+        .executeUpdate();
+    em.createQuery(INSERT_FROM_MEMBERS + " where t.id = :teamId group by t.id")
+        .setParameter("teamId", teamId)
+        .executeUpdate();
+  }
+}
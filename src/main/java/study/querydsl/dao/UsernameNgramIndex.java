@@ -0,0 +1,270 @@
+package study.querydsl.dao;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.datasource.ReplicationWatermark;
+import study.querydsl.entity.Member;
+
+/**
+ * username 의 3-gram 역색인. usernameContains 조건을 member 전체 {@code like '%x%'} 스캔 대신
+ * 검색어의 3-gram 을 모두 가진 회원 id(후보)로 좁히는 데 쓴다. 실제 포함 여부는 쿼리에서 다시 확인하므로
+ * 색인에 지워진 회원이 남아 있어도 결과는 틀리지 않는다.
+ *
+ * {@link UsernameNgramIndexListener} 로 Member 변경을 트랜잭션마다 모았다가 커밋된 뒤에 반영하고, 아직 커밋되지 않은
+ * 현재 트랜잭션의 변경은 후보에 더한다. 처음 쓸 때 member 의 (id, username) 을 한 번 읽어 만든다.
+ * 아직 커밋되지 않은 변경이 있는 트랜잭션에서 읽은 결과는 롤백될 수 있으므로 캐시하지 않는다.
+ * replica 가 마지막으로 반영한 변경을 따라잡기 전에 읽은 결과도 그 변경이 빠져 있을 수 있으므로 캐시하지 않는다.
+ * 검색어가 3글자보다 짧거나 후보가 maxCandidates 보다 많으면 색인으로 좁히지 않고 LIKE 로만 거른다.
+ */
+@Component
+public class UsernameNgramIndex {
+
+  static final int GRAM_LENGTH = 3;
+
+  private final EntityManager em;
+  private final JPAQueryFactory queryFactory;
+  private final int maxCandidates;
+  private final ReplicationWatermark replicationWatermark;
+  private final Object pendingKey = new Object();
+
+  // postings 는 커밋된 변경이 반영될 때 바뀌므로 읽고 쓸 때 모두 this 로 잠근다.
+  private long generation;
+  private long changedAtMillis;
+  private Postings postings;
+
+  // 엔티티 리스너가 EntityManagerFactory 생성 중에 주입받으므로 EntityManager 는 지연 주입한다.
+  public UsernameNgramIndex(@Lazy EntityManager em,
+      @Value("${member.search.ngram.max-candidates:1000}") int maxCandidates,
+      ReplicationWatermark replicationWatermark) {
+    this.em = em;
+    this.queryFactory = new JPAQueryFactory(em);
+    this.maxCandidates = maxCandidates;
+    this.replicationWatermark = replicationWatermark;
+  }
+
+  /**
+   * username 에 text 가 들어 있는 회원 조건. 색인으로 좁힐 수 있으면 후보 id 조건을 함께 건다.
+   */
+  public BooleanExpression usernameContains(String text) {
+    if (!hasText(text)) {
+      return null;
+    }
+    List<Long> candidates = candidates(text);
+    if (candidates == null) {
+      return member.username.contains(text);
+    }
+    return member.id.in(candidates).and(member.username.contains(text));
+  }
+
+  /**
+   * username 에 text 가 들어 있을 수 있는 회원 id (오름차순). 색인으로 좁힐 수 없으면 null
+   */
+  public List<Long> candidates(String text) {
+    if (text.length() < GRAM_LENGTH) {
+      return null;
+    }
+    Set<Long> found = read(postings -> postings.candidates(text, maxCandidates));
+    if (found == null) {
+      return null;
+    }
+    for (Map.Entry<Long, String> change : currentTransactionChanges().entrySet()) {
+      if (change.getValue() != null) {
+        found.add(change.getKey());
+      }
+    }
+    if (found.size() > maxCandidates) {
+      return null;
+    }
+    List<Long> sorted = new ArrayList<>(found);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  public synchronized void invalidate() {
+    generation++;
+    changedAtMillis = System.currentTimeMillis();
+    postings = null;
+  }
+
+  public void onSave(Member entity) {
+    onChange(entity.getId(), entity.getUsername());
+  }
+
+  public void onRemove(Member entity) {
+    onChange(entity.getId(), null);
+  }
+
+  // username 이 null 이면 삭제
+  private void onChange(Long id, String username) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply(Collections.singletonMap(id, username));
+      return;
+    }
+    pending().put(id, username);
+  }
+
+  private Map<Long, String> pending() {
+    @SuppressWarnings("unchecked")
+    Map<Long, String> pending =
+        (Map<Long, String>) TransactionSynchronizationManager.getResource(pendingKey);
+    if (pending != null) {
+      return pending;
+    }
+    Map<Long, String> created = new HashMap<>();
+    TransactionSynchronizationManager.bindResource(pendingKey, created);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+        if (status == STATUS_COMMITTED) {
+          apply(created);
+        }
+      }
+    });
+    return created;
+  }
+
+  // 쿼리의 auto flush 로 보였을 같은 트랜잭션의 변경이 후보에도 들어가도록 먼저 내보낸다.
+  @SuppressWarnings("unchecked")
+  private Map<Long, String> currentTransactionChanges() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      return Map.of();
+    }
+    Session session = em.unwrap(Session.class);
+    if (session.isDirty()) {
+      session.flush();
+    }
+    Map<Long, String> pending =
+        (Map<Long, String>) TransactionSynchronizationManager.getResource(pendingKey);
+    return pending != null ? pending : Map.of();
+  }
+
+  private synchronized void apply(Map<Long, String> changes) {
+    generation++;
+    changedAtMillis = System.currentTimeMillis();
+    if (postings != null) {
+      changes.forEach(postings::put);
+    }
+  }
+
+  private <T> T read(Function<Postings, T> reader) {
+    synchronized (this) {
+      if (postings != null) {
+        return reader.apply(postings);
+      }
+    }
+    Postings loaded = load();
+    synchronized (this) {
+      return reader.apply(loaded);
+    }
+  }
+
+  private Postings load() {
+    long startGeneration;
+    long changedAt;
+    synchronized (this) {
+      startGeneration = generation;
+      changedAt = changedAtMillis;
+    }
+    long watermark = replicationWatermark.current();
+    boolean ownChanges = !currentTransactionChanges().isEmpty();
+    List<Tuple> rows = queryFactory
+        .select(member.id, member.username)
+        .from(member)
+        .fetch();
+
+    Postings loaded = new Postings();
+    for (Tuple row : rows) {
+      loaded.put(row.get(member.id), row.get(member.username));
+    }
+    synchronized (this) {
+      // 읽는 동안 커밋된 변경은 결과에 들어갔는지 알 수 없고, 현재 트랜잭션의 변경은 롤백될 수 있으므로
+      // 이번 호출에서만 쓰고 캐시하지 않는다. replica 가 마지막 변경을 따라잡기 전에 읽은 결과도 마찬가지다.
+      if (!ownChanges && generation == startGeneration
+          && ReplicationWatermark.includes(watermark, changedAt)) {
+        postings = loaded;
+      }
+    }
+    return loaded;
+  }
+
+  // 3-gram 은 UTF-16 코드 단위 세 개를 long 하나에 담는다.
+  private static long[] grams(String text) {
+    int count = Math.max(0, text.length() - GRAM_LENGTH + 1);
+    long[] grams = new long[count];
+    for (int i = 0; i < count; i++) {
+      grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16)
+          | text.charAt(i + 2);
+    }
+    return grams;
+  }
+
+  private static final class Postings {
+
+    private final Map<Long, String> usernames = new HashMap<>();
+    private final Map<Long, Set<Long>> idsByGram = new HashMap<>();
+
+    // username 이 null 이면 삭제
+    void put(Long id, String username) {
+      String previous = username != null ? usernames.put(id, username) : usernames.remove(id);
+      if (Objects.equals(previous, username)) {
+        return;
+      }
+      if (previous != null) {
+        for (long gram : grams(previous)) {
+          Set<Long> ids = idsByGram.get(gram);
+          if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            idsByGram.remove(gram);
+          }
+        }
+      }
+      if (username != null) {
+        for (long gram : grams(username)) {
+          idsByGram.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+      }
+    }
+
+    // 가장 짧은 목록부터 교집합을 만든다. 가장 짧은 목록도 max 보다 길면 null
+    Set<Long> candidates(String text, int max) {
+      List<Set<Long>> lists = new ArrayList<>();
+      for (long gram : grams(text)) {
+        Set<Long> ids = idsByGram.get(gram);
+        if (ids == null) {
+          return new HashSet<>();
+        }
+        lists.add(ids);
+      }
+      lists.sort(Comparator.comparingInt(Set::size));
+      if (lists.get(0).size() > max) {
+        return null;
+      }
+      Set<Long> result = new HashSet<>(lists.get(0));
+      for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+        result.retainAll(lists.get(i));
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.dao.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.monitoring.QueryTag;
+
+/**
+ * 페이징의 count 쿼리를 content 쿼리와 동시에 별도 스레드(= 별도 커넥션)에서 실행한다.
+ * 커넥션 풀을 다 쓰지 않도록 스레드 수를 제한하고, 큐가 차면 호출한 스레드에서 바로 실행한다.
+ * count 는 readOnly 트랜잭션에서 실행하므로 replica 를 설정했으면 content 와 같이 replica 로 간다.
+ *
+ * 취소({@link Future#cancel})는 스레드를 인터럽트할 뿐이고 JDBC 는 이를 무시하므로, DB 에서 실행 중인 count 는
+ * 끝날 때까지 커넥션을 잡고 있다. 그래서 count 쿼리에 DB 쿼리 타임아웃({@link #applyTimeout})을 걸어 버려진 count 가
+ * 오래 남지 않게 한다. 타임아웃이 지났는데 total 이 필요하면 QueryTimeoutException 이 난다.
+ */
+@Component
+public class CountQueryExecutor implements DisposableBean {
+
+  private final boolean enabled;
+  private final int threads;
+  private final Duration timeout;
+  private final ThreadPoolExecutor executor;
+  private final TransactionTemplate readOnlyTransaction;
+
+  public CountQueryExecutor(PlatformTransactionManager transactionManager,
+      @Value("${member.page.concurrent-count:false}") boolean enabled,
+      @Value("${member.page.count-threads:4}") int threads,
+      @Value("${member.page.count-timeout:5s}") Duration timeout) {
+    this.enabled = enabled;
+    this.threads = threads;
+    this.timeout = timeout;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    AtomicInteger sequence = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(threads * 16),
+        runnable -> {
+          Thread thread = new Thread(runnable, "count-query-" + sequence.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * 트랜잭션 안에서는 다른 커넥션이 아직 커밋되지 않은 변경을 볼 수 없으므로 동시 실행하지 않는다.
+   * 바깥 트랜잭션부터 readOnly 라면 커밋 안 된 변경이 없으므로 동시에 실행해도 된다.
+   */
+  public boolean isConcurrent() {
+    return enabled && (!TransactionSynchronizationManager.isActualTransactionActive()
+        || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+  }
+
+  /**
+   * 동시 count 가 동시에 쓸 수 있는 커넥션 수. 큐가 차서 호출한 스레드에서 실행하면 그 스레드의 커넥션을 쓴다.
+   */
+  public int maxConnections() {
+    return enabled ? threads : 0;
+  }
+
+  /**
+   * count 쿼리에 DB 쿼리 타임아웃을 건다. (Statement#setQueryTimeout, 초 단위로 올림) 0 이면 걸지 않는다.
+   */
+  public <T> JPAQuery<T> applyTimeout(JPAQuery<T> countQuery) {
+    if (!timeout.isZero()) {
+      countQuery.setHint(SpecHints.HINT_SPEC_QUERY_TIMEOUT,
+          (int) Math.min(Integer.MAX_VALUE, timeout.toMillis()));
+    }
+    return countQuery;
+  }
+
+  public Future<Long> submit(LongSupplier countQuery) {
+    // SQL 통계에서 호출한 리포지토리 메서드의 count 로 묶이도록 태그를 넘겨준다.
+    Supplier<Long> task = QueryTag.propagate("#count",
+        () -> readOnlyTransaction.execute(status -> countQuery.getAsLong()));
+    return executor.submit(task::get);
+  }
+
+  public long await(Future<Long> count) {
+    try {
+      return count.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for count query", e);
+    } catch (CancellationException e) {
+      throw new IllegalStateException("Count query was cancelled", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Count query failed", e.getCause());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+}
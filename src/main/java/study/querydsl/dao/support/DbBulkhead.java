@@ -0,0 +1,203 @@
+package study.querydsl.dao.support;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.monitoring.LatencyHistogram;
+
+/**
+ * DB 를 쓰는 작업이 동시에 permits 개까지만 실행되게 막는다.
+ * 동시 count({@link CountQueryExecutor})는 bulkhead 밖에서 커넥션을 따로 쓰므로,
+ * permits 기본값은 커넥션 풀 크기에서 count 스레드 수를 뺀 값이고 permits + count 스레드가 풀보다 크면 시작하지 않는다.
+ * 자리가 날 때까지 queue-timeout 만큼 기다리고, 그 안에 못 들어가면 {@link DbBulkheadFullException} 으로 바로 실패한다.
+ * 커넥션 풀에서 connection-timeout(기본 30초) 동안 스레드를 붙잡고 있다가 실패하는 대신 빨리 503 을 돌려주기 위함이다.
+ *
+ * {@link #call} 은 호출한 스레드에서 기다리고, {@link #callAsync} 는 요청 스레드를 붙잡지 않고 큐에 넣는다.
+ * 비동기 작업은 permits 개의 스레드에서만 실행되므로 대기 중인 요청은 스레드 없이 큐 항목으로만 남는다.
+ * (Java 17 이라 가상 스레드 대신 쓰는 방식)
+ */
+@Component
+public class DbBulkhead implements DisposableBean {
+
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int EXPIRED = 2;
+
+  private final int permits;
+  private final Duration queueTimeout;
+  private final Semaphore semaphore;
+  private final ThreadPoolExecutor executor;
+
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final LongAccumulator maxQueueMicros = new LongAccumulator(Math::max, 0L);
+  private final LatencyHistogram queueTime = new LatencyHistogram();
+
+  @Autowired
+  public DbBulkhead(CountQueryExecutor countQueryExecutor,
+      @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+      @Value("${db.bulkhead.permits:0}") int permits,
+      @Value("${db.bulkhead.queue-timeout:200ms}") Duration queueTimeout,
+      @Value("${db.bulkhead.max-queue:1000}") int maxQueue) {
+    this(permitsWithinPool(poolSize, countQueryExecutor.maxConnections(), permits), queueTimeout,
+        maxQueue);
+  }
+
+  public DbBulkhead(int permits, Duration queueTimeout, int maxQueue) {
+    if (permits <= 0) {
+      throw new IllegalArgumentException("permits must be greater than zero: " + permits);
+    }
+    this.permits = permits;
+    this.queueTimeout = queueTimeout;
+    this.semaphore = new Semaphore(permits, true);
+    AtomicInteger sequence = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(permits, permits, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(maxQueue),
+        runnable -> {
+          Thread thread = new Thread(runnable, "db-bulkhead-" + sequence.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  // permits 가 0 이면 풀에서 count 몫을 뺀 나머지를 쓴다.
+  static int permitsWithinPool(int poolSize, int countConnections, int permits) {
+    int available = poolSize - countConnections;
+    int resolved = permits > 0 ? permits : available;
+    if (resolved > available) {
+      throw new IllegalStateException("db.bulkhead.permits(" + resolved
+          + ") + concurrent count connections(" + countConnections
+          + ") exceed the connection pool size(" + poolSize + ")");
+    }
+    return resolved;
+  }
+
+  public <T> T call(Supplier<T> work) {
+    return call(work, System.nanoTime(), queueTimeout.toNanos());
+  }
+
+  /**
+   * 큐에서 queue-timeout 을 넘기면 실행하지 않고 {@link DbBulkheadFullException} 으로 끝난다.
+   * 큐가 가득 차 있으면 바로 실패한다.
+   */
+  public <T> CompletableFuture<T> callAsync(Supplier<T> work) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    AtomicInteger state = new AtomicInteger(QUEUED);
+    long enqueuedAt = System.nanoTime();
+    long timeoutNanos = queueTimeout.toNanos();
+    try {
+      queued.incrementAndGet();
+      executor.execute(() -> {
+        if (!state.compareAndSet(QUEUED, RUNNING)) {
+          return;
+        }
+        queued.decrementAndGet();
+        try {
+          long remaining = timeoutNanos - (System.nanoTime() - enqueuedAt);
+          result.complete(call(work, enqueuedAt, Math.max(0, remaining)));
+        } catch (Throwable e) {
+          result.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queued.decrementAndGet();
+      rejected.increment();
+      result.completeExceptionally(new DbBulkheadFullException("DB bulkhead queue is full"));
+      return result;
+    }
+    // 큐 앞쪽이 밀려 있어도 deadline 이 지나면 차례를 기다리지 않고 바로 실패시킨다.
+    CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS).execute(() -> {
+      if (state.compareAndSet(QUEUED, EXPIRED)) {
+        queued.decrementAndGet();
+        recordQueueTime(enqueuedAt);
+        rejected.increment();
+        result.completeExceptionally(new DbBulkheadFullException(
+            "Timed out after " + queueTimeout.toMillis() + "ms waiting for a DB permit"));
+      }
+    });
+    return result;
+  }
+
+  public Stats stats() {
+    LatencyHistogram.Percentiles percentiles = queueTime.percentiles();
+    return new Stats(permits, permits - semaphore.availablePermits(), queued.get(),
+        accepted.sum(), rejected.sum(), percentiles.p50Micros(), percentiles.p99Micros(),
+        maxQueueMicros.get());
+  }
+
+  private <T> T call(Supplier<T> work, long enqueuedAt, long timeoutNanos) {
+    boolean acquired;
+    try {
+      acquired = semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbBulkheadFullException("Interrupted while waiting for a DB permit");
+    }
+    recordQueueTime(enqueuedAt);
+    if (!acquired) {
+      rejected.increment();
+      throw new DbBulkheadFullException(
+          "Timed out after " + queueTimeout.toMillis() + "ms waiting for a DB permit");
+    }
+    accepted.increment();
+    try {
+      return work.get();
+    } finally {
+      semaphore.release();
+    }
+  }
+
+  private void recordQueueTime(long enqueuedAt) {
+    long micros = (System.nanoTime() - enqueuedAt) / 1_000;
+    queueTime.record(micros);
+    maxQueueMicros.accumulate(micros);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  @Getter
+  @ToString
+  public static class Stats {
+
+    private final int permits;
+    private final int inFlight;
+    private final int queued;
+    private final long accepted;
+    private final long rejected;
+    private final long queueP50Micros;
+    private final long queueP99Micros;
+    private final long queueMaxMicros;
+
+    Stats(int permits, int inFlight, int queued, long accepted, long rejected,
+        long queueP50Micros, long queueP99Micros, long queueMaxMicros) {
+      this.permits = permits;
+      this.inFlight = inFlight;
+      this.queued = queued;
+      this.accepted = accepted;
+      this.rejected = rejected;
+      this.queueP50Micros = queueP50Micros;
+      this.queueP99Micros = queueP99Micros;
+      this.queueMaxMicros = queueMaxMicros;
+    }
+  }
+}
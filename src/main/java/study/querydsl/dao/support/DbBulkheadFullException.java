@@ -0,0 +1,8 @@
+package study.querydsl.dao.support;
+
+public class DbBulkheadFullException extends RuntimeException {
+
+  public DbBulkheadFullException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.dao.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * IN 절 파라미터를 chunk 로 나누고 각 chunk 를 2의 거듭제곱 개로 채운다. (마지막 값을 반복)
+ * 파라미터 개수가 1, 2, 4, 8 ... 로만 나오므로 SQL 모양이 몇 개로 고정되어 실행 계획이 재사용된다.
+ */
+public final class InListPadding {
+
+  private InListPadding() {
+  }
+
+  public static <T> List<List<T>> paddedChunks(Collection<T> values, int chunkSize) {
+    if (Integer.bitCount(chunkSize) != 1) {
+      throw new IllegalArgumentException("Chunk size must be a power of two: " + chunkSize);
+    }
+    List<T> distinct = distinct(values);
+    List<List<T>> chunks = new ArrayList<>((distinct.size() + chunkSize - 1) / chunkSize);
+    for (int from = 0; from < distinct.size(); from += chunkSize) {
+      List<T> chunk = distinct.subList(from, Math.min(distinct.size(), from + chunkSize));
+      chunks.add(pad(chunk));
+    }
+    return chunks;
+  }
+
+  public static <T> List<T> distinct(Collection<T> values) {
+    LinkedHashSet<T> distinct = new LinkedHashSet<>(values);
+    distinct.remove(null);
+    return new ArrayList<>(distinct);
+  }
+
+  static <T> List<T> pad(List<T> chunk) {
+    int size = chunk.size();
+    int padded = size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+    List<T> result = new ArrayList<>(padded);
+    result.addAll(chunk);
+    T last = chunk.get(size - 1);
+    while (result.size() < padded) {
+      result.add(last);
+    }
+    return result;
+  }
+}
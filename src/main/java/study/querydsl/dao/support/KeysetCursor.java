@@ -0,0 +1,117 @@
+package study.querydsl.dao.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.StringUtils;
+
+/**
+ * 키셋 페이징의 마지막 위치(정렬 키 + id)를 담는 커서.
+ * 클라이언트에는 Base64(URL-safe) 로 인코딩한 불투명 토큰으로만 노출한다.
+ * 어떤 정렬로 만든 커서인지(sortKey) 함께 인코딩해서 다른 정렬에 넘기면 {@link #checkSortKey} 가 거절한다.
+ * 정렬 키 값이 null 이면 "sortKey:id", 아니면 "sortKey:id:값" 이다. (빈 문자열은 "sortKey:id:" 로 구분된다)
+ * sortKey 에는 ':' 가 들어가지 않아야 한다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class KeysetCursor {
+
+  private static final char SEPARATOR = ':';
+
+  // 커서를 만든 정렬. applyKeysetPagination 이 채우기 전에는 null
+  private final String sortKey;
+  private final Long id;
+  private final String sortValue;
+
+  private KeysetCursor(String sortKey, Long id, String sortValue) {
+    this.sortKey = sortKey;
+    this.id = id;
+    this.sortValue = sortValue;
+  }
+
+  public static KeysetCursor of(Long id) {
+    return of(id, null);
+  }
+
+  public static KeysetCursor of(Long id, Object sortValue) {
+    if (id == null) {
+      throw new IllegalArgumentException("Cursor id must not be null!");
+    }
+    return new KeysetCursor(null, id, sortValue == null ? null : sortValue.toString());
+  }
+
+  public KeysetCursor withSortKey(String sortKey) {
+    return new KeysetCursor(sortKey, id, sortValue);
+  }
+
+  /**
+   * 다른 정렬로 만든 커서를 그대로 쓰면 엉뚱한 위치에서 이어지므로 거절한다.
+   */
+  public void checkSortKey(String expected) {
+    if (!Objects.equals(sortKey, expected)) {
+      throw new IllegalArgumentException(
+          "Cursor was created for sort '" + sortKey + "', not '" + expected + "'");
+    }
+  }
+
+  public static KeysetCursor decode(String token) {
+    if (!StringUtils.hasText(token)) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int keyEnd = raw.indexOf(SEPARATOR);
+      if (keyEnd < 0) {
+        throw new IllegalArgumentException("Cursor has no sort key");
+      }
+      String sortKey = raw.substring(0, keyEnd);
+      String rest = raw.substring(keyEnd + 1);
+      int idx = rest.indexOf(SEPARATOR);
+      if (idx < 0) {
+        return new KeysetCursor(sortKey, Long.valueOf(rest), null);
+      }
+      return new KeysetCursor(sortKey, Long.valueOf(rest.substring(0, idx)),
+          rest.substring(idx + 1));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+  }
+
+  public String encode() {
+    if (sortKey == null) {
+      throw new IllegalStateException("Cursor has no sort key");
+    }
+    String raw = sortKey + SEPARATOR + id + (sortValue == null ? "" : SEPARATOR + sortValue);
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public boolean hasSortValue() {
+    return sortValue != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <S> S getSortValue(Class<S> type) {
+    if (sortValue == null) {
+      throw new IllegalArgumentException("Cursor has no sort value");
+    }
+    try {
+      if (type == String.class) {
+        return (S) sortValue;
+      }
+      if (type == Integer.class) {
+        return (S) Integer.valueOf(sortValue);
+      }
+      if (type == Long.class) {
+        return (S) Long.valueOf(sortValue);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cursor sort value: " + sortValue, e);
+    }
+    throw new IllegalArgumentException("Unsupported cursor sort type: " + type.getName());
+  }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.dao.support;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString(of = {"size", "hasNext", "nextCursor"})
+public class KeysetPage<T> {
+
+  private final List<T> content;
+  private final int size;
+  private final boolean hasNext;
+  private final String nextCursor;
+
+  public KeysetPage(List<T> content, int size, String nextCursor) {
+    this.content = content;
+    this.size = size;
+    this.hasNext = nextCursor != null;
+    this.nextCursor = nextCursor;
+  }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.dao.support;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+
+/**
+ * 접두사 조건을 {@code like 'x%'} 대신 {@code >= 'x' and < 'y'} 범위로 만든다. (y 는 x 의 마지막 글자를 하나 올린 값)
+ * 인덱스 범위 스캔이 되고, 문자열이 UTF-16 코드 단위 순서(binary collation)로 정렬된다는 전제에서 startsWith 와 같다.
+ */
+public final class PrefixRange {
+
+  private PrefixRange() {
+  }
+
+  public static BooleanExpression startsWith(StringExpression path, String prefix) {
+    String upperBound = upperBound(prefix);
+    if (upperBound == null) {
+      // 접두사가 모두 Character.MAX_VALUE 면 위쪽 경계가 없으므로 LIKE 로 확인한다.
+      return path.goe(prefix).and(path.startsWith(prefix));
+    }
+    return path.goe(prefix).and(path.lt(upperBound));
+  }
+
+  /**
+   * prefix 로 시작하는 모든 문자열보다 큰 가장 작은 문자열. 없으면 null
+   */
+  public static String upperBound(String prefix) {
+    int end = prefix.length();
+    while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+      end--;
+    }
+    if (end == 0) {
+      return null;
+    }
+    return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+  }
+}
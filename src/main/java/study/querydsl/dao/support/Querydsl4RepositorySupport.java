@@ -0,0 +1,403 @@
+package study.querydsl.dao.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import
+    org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+@Repository
+public abstract class Querydsl4RepositorySupport {
+
+  private final Class domainClass;
+  private Querydsl querydsl;
+  private EntityManager entityManager;
+  private JPAQueryFactory queryFactory;
+  private TransactionTemplate chunkTransaction;
+
+  public Querydsl4RepositorySupport(Class<?> domainClass) {
+    Assert.notNull(domainClass, "Domain class must not be null!");
+    this.domainClass = domainClass;
+  }
+
+  @Autowired
+  public void setEntityManager(EntityManager entityManager) {
+    Assert.notNull(entityManager, "EntityManager must not be null!");
+    JpaEntityInformation entityInformation =
+        JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
+    SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
+    EntityPath path = resolver.createPath(entityInformation.getJavaType());
+    this.entityManager = entityManager;
+    this.querydsl = new Querydsl(entityManager, new
+        PathBuilder<>(path.getType(), path.getMetadata()));
+    this.queryFactory = new JPAQueryFactory(entityManager);
+  }
+
+  @Autowired
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    Assert.notNull(transactionManager, "TransactionManager must not be null!");
+    this.chunkTransaction = new TransactionTemplate(transactionManager);
+    this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  @PostConstruct
+  public void validate() {
+    Assert.notNull(entityManager, "EntityManager must not be null!");
+    Assert.notNull(querydsl, "Querydsl must not be null!");
+    Assert.notNull(queryFactory, "QueryFactory must not be null!");
+    Assert.notNull(chunkTransaction, "TransactionTemplate must not be null!");
+  }
+
+  protected JPAQueryFactory getQueryFactory() {
+    return queryFactory;
+  }
+
+  protected Querydsl getQuerydsl() {
+    return querydsl;
+  }
+
+  protected EntityManager getEntityManager() {
+    return entityManager;
+  }
+
+  protected <T> JPAQuery<T> select(Expression<T> expr) {
+    return getQueryFactory().select(expr);
+  }
+
+  protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
+    return getQueryFactory().selectFrom(from);
+  }
+
+  protected <T> Page<T> applyPagination(Pageable pageable,
+      Function<JPAQueryFactory, JPAQuery> contentQuery) {
+    JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+    LongSupplier count = countOf(jpaQuery);
+    List<T> content = getQuerydsl().applyPagination(pageable,
+        jpaQuery).fetch();
+    return PageableExecutionUtils.getPage(content, pageable, count);
+  }
+
+  protected <T> Page<T> applyPagination(Pageable pageable,
+      Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+      JPAQuery> countQuery) {
+    JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+    List<T> content = getQuerydsl().applyPagination(pageable,
+        jpaContentQuery).fetch();
+    JPAQuery countResult = countQuery.apply(getQueryFactory());
+    return PageableExecutionUtils.getPage(content, pageable, countOf(countResult));
+  }
+
+  /**
+   * content 쿼리에서 count 쿼리를 만든다. (deprecated 된 fetchCount 대신)
+   * order by, offset/limit, fetch join 을 빼고, where/having/group by 와 다른 조인에서 쓰지 않는
+   * to-one 연관관계 left join 은 결과 행 수를 바꾸지 않으므로 조인 자체를 뺀다. (엔티티 세타 조인은 남긴다)
+   * 프로젝션은 count(루트 id) 로 바꾼다.
+   * group by 가 있으면 그룹 수를 세야 하므로 그룹 키만 조회해서 행 수를 센다.
+   * 반드시 pageable 을 적용하기 전에 호출해야 한다. (order by 는 빼지만 원본 메타데이터를 바꾸지는 않는다)
+   */
+  protected LongSupplier countOf(JPAQuery<?> contentQuery) {
+    QueryMetadata source = contentQuery.getMetadata();
+    Assert.notEmpty(source.getJoins(), "Content query must have a from clause!");
+    QueryMetadata metadata = new DefaultQueryMetadata();
+    metadata.setValidate(false);
+    source.getFlags().forEach(metadata::addFlag);
+    source.getParams().forEach((param, value) -> setParam(metadata, param, value));
+    metadata.addWhere(source.getWhere());
+    source.getGroupBy().forEach(metadata::addGroupBy);
+    metadata.addHaving(source.getHaving());
+    for (JoinExpression join : requiredJoins(source)) {
+      metadata.addJoin(join.getType(), join.getTarget());
+      if (join.getCondition() != null) {
+        metadata.addJoinCondition(join.getCondition());
+      }
+      join.getFlags().stream()
+          .filter(flag -> !JPAQueryMixin.FETCH.equals(flag)
+              && !JPAQueryMixin.FETCH_ALL_PROPERTIES.equals(flag))
+          .forEach(metadata::addJoinFlag);
+    }
+
+    if (!source.getGroupBy().isEmpty()) {
+      metadata.setProjection(Projections.tuple(source.getGroupBy().toArray(new Expression<?>[0])));
+      JPAQuery<?> groupQuery = new JPAQuery<>(getEntityManager(), metadata);
+      return () -> groupQuery.fetch().size();
+    }
+    Expression<?> countTarget = countTarget(source.getJoins().get(0).getTarget());
+    metadata.setProjection(source.isDistinct()
+        ? Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, countTarget)
+        : Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_AGG, countTarget));
+    JPAQuery<Long> countQuery = new JPAQuery<>(getEntityManager(), metadata);
+    return () -> {
+      Long count = countQuery.fetchOne();
+      return count == null ? 0 : count;
+    };
+  }
+
+  // 뒤쪽 조인부터 보면서, 쓰이지 않는 to-one left join 을 뺀다. 남는 조인이 참조하는 별칭은 앞쪽 조인에서 필요하다.
+  private List<JoinExpression> requiredJoins(QueryMetadata source) {
+    Set<Expression<?>> used = new HashSet<>();
+    collectPaths(source.getWhere(), used);
+    collectPaths(source.getHaving(), used);
+    source.getGroupBy().forEach(groupBy -> collectPaths(groupBy, used));
+
+    List<JoinExpression> joins = source.getJoins();
+    LinkedList<JoinExpression> required = new LinkedList<>();
+    for (int i = joins.size() - 1; i >= 0; i--) {
+      JoinExpression join = joins.get(i);
+      Expression<?> target = join.getTarget();
+      boolean alias = target instanceof Operation<?> operation && operation.getOperator() == Ops.ALIAS;
+      Expression<?> joined = alias ? ((Operation<?>) target).getArg(0) : target;
+      Expression<?> name = alias ? ((Operation<?>) target).getArg(1) : target;
+      // 연관관계 경로(부모가 있는 Path)만 뺀다. 루트 엔티티를 on 으로 붙이는 세타 조인은 한 행에 여러 행이 붙을 수 있다.
+      boolean association = joined instanceof Path<?> path && path.getMetadata().getParent() != null;
+      boolean droppable = i > 0 && join.getType() == JoinType.LEFTJOIN && association
+          && !(joined instanceof CollectionExpression<?, ?>) && !(joined instanceof MapExpression<?, ?>)
+          && !used.contains(name);
+      if (!droppable) {
+        required.addFirst(join);
+        collectPaths(joined, used);
+        collectPaths(join.getCondition(), used);
+      }
+    }
+    return required;
+  }
+
+  private Expression<?> countTarget(Expression<?> from) {
+    Expression<?> root = from instanceof Operation<?> operation && operation.getOperator() == Ops.ALIAS
+        ? operation.getArg(1) : from;
+    if (!(root instanceof Path<?> rootPath)) {
+      return root;
+    }
+    JpaEntityInformation<?, ?> information =
+        JpaEntityInformationSupport.getEntityInformation(rootPath.getType(), entityManager);
+    if (information.getIdAttribute() == null || information.hasCompositeId()) {
+      return rootPath;
+    }
+    return ExpressionUtils.path(information.getIdType(), rootPath,
+        information.getIdAttribute().getName());
+  }
+
+  // 경로와 그 부모 경로(별칭까지)를 모두 모은다.
+  private static void collectPaths(Expression<?> expression, Set<Expression<?>> paths) {
+    if (expression == null) {
+      return;
+    }
+    if (expression instanceof Path<?> path) {
+      for (Path<?> current = path; current != null; current = current.getMetadata().getParent()) {
+        paths.add(current);
+      }
+    } else if (expression instanceof Operation<?> operation) {
+      operation.getArgs().forEach(arg -> collectPaths(arg, paths));
+    } else if (expression instanceof TemplateExpression<?> template) {
+      template.getArgs().stream()
+          .filter(Expression.class::isInstance)
+          .forEach(arg -> collectPaths((Expression<?>) arg, paths));
+    } else if (expression instanceof FactoryExpression<?> factory) {
+      factory.getArgs().forEach(arg -> collectPaths(arg, paths));
+    } else if (expression instanceof SubQueryExpression<?> subQuery) {
+      QueryMetadata metadata = subQuery.getMetadata();
+      collectPaths(metadata.getWhere(), paths);
+      collectPaths(metadata.getHaving(), paths);
+      metadata.getGroupBy().forEach(groupBy -> collectPaths(groupBy, paths));
+      metadata.getJoins().forEach(join -> {
+        collectPaths(join.getTarget(), paths);
+        collectPaths(join.getCondition(), paths);
+      });
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <P> void setParam(QueryMetadata metadata, ParamExpression<P> param,
+      Object value) {
+    metadata.setParam(param, (P) value);
+  }
+
+  /**
+   * 키셋(seek) 페이징. offset 없이 마지막으로 본 (정렬 키, id) 다음 행부터 size 건을 읽는다.
+   * 정렬 키가 없으면 id 오름차순으로만 seek 하고, 있으면 (정렬 키, id) 를 같은 방향으로 정렬한다.
+   * 정렬 키가 null 인 행은 방향과 관계없이 맨 뒤에 두고(nulls last) 그 안에서는 id 순서로 seek 한다.
+   * size + 1 건을 조회해서 다음 페이지 존재 여부를 판단하므로 count 쿼리는 실행하지 않는다.
+   * 커서에는 만든 정렬을 넣어 두고, 다른 정렬로 받은 커서는 IllegalArgumentException 으로 거절한다.
+   */
+  protected <T> KeysetPage<T> applyKeysetPagination(KeysetCursor cursor, int size,
+      NumberPath<Long> idPath, OrderSpecifier<?> sortOrder,
+      Function<JPAQueryFactory, JPAQuery<T>> contentQuery, Function<T, KeysetCursor> cursorOf) {
+    Assert.isTrue(size > 0, "Page size must be greater than zero!");
+    String sortKey = keysetSortKey(sortOrder);
+    if (cursor != null) {
+      cursor.checkSortKey(sortKey);
+    }
+    JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory())
+        .where(seekPredicate(cursor, idPath, sortOrder));
+    if (sortOrder == null) {
+      jpaQuery.orderBy(idPath.asc());
+    } else {
+      jpaQuery.orderBy(sortOrder.nullsLast(), new OrderSpecifier<>(sortOrder.getOrder(), idPath));
+    }
+    List<T> rows = jpaQuery
+        .limit(size + 1L)
+        .fetch();
+
+    if (rows.size() <= size) {
+      return new KeysetPage<>(rows, size, null);
+    }
+    List<T> content = rows.subList(0, size);
+    return new KeysetPage<>(content, size,
+        cursorOf.apply(content.get(size - 1)).withSortKey(sortKey).encode());
+  }
+
+  // 예: "id", "member.age DESC"
+  private static String keysetSortKey(OrderSpecifier<?> sortOrder) {
+    return sortOrder == null ? "id" : sortOrder.getTarget() + " " + sortOrder.getOrder();
+  }
+
+  private Predicate seekPredicate(KeysetCursor cursor, NumberPath<Long> idPath,
+      OrderSpecifier<?> sortOrder) {
+    if (cursor == null) {
+      return null;
+    }
+    if (sortOrder == null) {
+      return idPath.gt(cursor.getId());
+    }
+    Ops op = sortOrder.isAscending() ? Ops.GT : Ops.LT;
+    Expression<?> sortKey = sortOrder.getTarget();
+    BooleanExpression nullSortKey = Expressions.booleanOperation(Ops.IS_NULL, sortKey);
+    BooleanExpression pastId = Expressions.booleanOperation(op, idPath,
+        Expressions.constant(cursor.getId()));
+    // 마지막 행의 정렬 키가 null 이면 null 구간 안에서 id 로만 넘긴다.
+    if (!cursor.hasSortValue()) {
+      return nullSortKey.and(pastId);
+    }
+    Expression<?> lastValue = Expressions.constant(cursor.getSortValue(sortKey.getType()));
+    BooleanExpression pastSortKey = Expressions.booleanOperation(op, sortKey, lastValue);
+    BooleanExpression sameSortKey = Expressions.booleanOperation(Ops.EQ, sortKey, lastValue);
+    return pastSortKey.or(sameSortKey.and(pastId)).or(nullSortKey);
+  }
+
+  /**
+   * where 에 해당하는 행을 id 순서로 chunkSize 건씩 끊어서, id 범위마다 별도의 짧은 트랜잭션(REQUIRES_NEW)으로 update 한다.
+   * 락과 undo 가 chunk 하나 크기만큼만 유지된다. 끝난 chunk 는 바로 커밋되므로 중간에 실패하면 앞 chunk 의 변경은 남는다.
+   * em.clear() 대신 현재 영속성 컨텍스트에 올라와 있는 대상 엔티티만 detach 한다.
+   * update 에는 조인을 쓸 수 없으므로 where 는 대상 엔티티의 컬럼만 사용해야 한다.
+   */
+  protected long bulkUpdate(EntityPath<?> entity, NumberPath<Long> idPath, Predicate where,
+      int chunkSize, Consumer<JPAUpdateClause> assignments) {
+    return executeInChunks(entity, idPath, where, chunkSize, chunkWhere -> {
+      JPAUpdateClause update = getQueryFactory().update(entity);
+      assignments.accept(update);
+      return update.where(chunkWhere).execute();
+    });
+  }
+
+  /**
+   * {@link #bulkUpdate} 와 같은 방식으로 chunk 마다 별도 트랜잭션에서 delete 한다.
+   */
+  protected long bulkDelete(EntityPath<?> entity, NumberPath<Long> idPath, Predicate where,
+      int chunkSize) {
+    return executeInChunks(entity, idPath, where, chunkSize,
+        chunkWhere -> getQueryFactory().delete(entity).where(chunkWhere).execute());
+  }
+
+  private long executeInChunks(EntityPath<?> entity, NumberPath<Long> idPath, Predicate where,
+      int chunkSize, Function<Predicate, Long> clause) {
+    Assert.isTrue(chunkSize > 0, "Chunk size must be greater than zero!");
+    long affected = 0;
+    Long lastId = null;
+    while (true) {
+      Long afterId = lastId;
+      BulkChunk chunk = chunkTransaction.execute(status -> {
+        List<Long> ids = getQueryFactory()
+            .select(idPath)
+            .from(entity)
+            .where(where, afterId == null ? null : idPath.gt(afterId))
+            .orderBy(idPath.asc())
+            .limit(chunkSize)
+            .fetch();
+        if (ids.isEmpty()) {
+          return null;
+        }
+        Predicate idRange = idPath.between(ids.get(0), ids.get(ids.size() - 1));
+        return new BulkChunk(ids, clause.apply(ExpressionUtils.allOf(where, idRange)));
+      });
+      if (chunk == null) {
+        return affected;
+      }
+      affected += chunk.affected();
+      detachManaged(entity.getType(), chunk.ids());
+      if (chunk.ids().size() < chunkSize) {
+        return affected;
+      }
+      lastId = chunk.ids().get(chunk.ids().size() - 1);
+    }
+  }
+
+  // 바깥 트랜잭션(또는 open-in-view)의 영속성 컨텍스트가 있을 때만 그 안의 대상 엔티티를 detach 한다.
+  private void detachManaged(Class<?> entityType, List<Long> ids) {
+    EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(
+        entityManager.getEntityManagerFactory());
+    if (current == null) {
+      return;
+    }
+    SessionImplementor session = current.unwrap(SessionImplementor.class);
+    EntityPersister persister = session.getFactory().getMappingMetamodel()
+        .getEntityDescriptor(entityType);
+    for (Long id : ids) {
+      Object managed = session.getPersistenceContextInternal()
+          .getEntity(session.generateEntityKey(id, persister));
+      if (managed != null) {
+        current.detach(managed);
+      }
+    }
+  }
+
+  private record BulkChunk(List<Long> ids, long affected) {
+
+  }
+}
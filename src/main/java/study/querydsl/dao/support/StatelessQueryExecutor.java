@@ -0,0 +1,86 @@
+package study.querydsl.dao.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 엔티티 조회를 StatelessSession 으로 실행한다.
+ * 영속성 컨텍스트에 올리지 않으므로 dirty checking 용 스냅샷이 없고 flush 대상도 아니며,
+ * 돌려받는 엔티티는 처음부터 준영속 상태다. (지연 로딩 연관관계는 초기화할 수 없다)
+ * 현재 트랜잭션의 커넥션을 그대로 쓰므로 같은 트랜잭션에서 아직 커밋 안 된 변경도 보인다.
+ */
+@Component
+public class StatelessQueryExecutor {
+
+  private final EntityManager em;
+
+  public StatelessQueryExecutor(EntityManager em) {
+    this.em = em;
+  }
+
+  @Transactional(readOnly = true)
+  public <T> List<T> fetch(String jpql, Class<T> resultType, Map<String, Object> parameters) {
+    return execute(statelessSession -> {
+      Query<T> query = statelessSession.createQuery(jpql, resultType);
+      parameters.forEach(query::setParameter);
+      return query.getResultList();
+    });
+  }
+
+  @Transactional(readOnly = true)
+  @SuppressWarnings("unchecked")
+  public <T> List<T> fetch(JPAQuery<T> jpaQuery) {
+    QueryMetadata metadata = jpaQuery.getMetadata();
+    JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+    serializer.serialize(metadata, false, null);
+    Class<T> resultType = (Class<T>) metadata.getProjection().getType();
+
+    return execute(statelessSession -> {
+      Query<T> query = statelessSession.createQuery(serializer.toString(), resultType);
+      JPAUtil.setConstants(query, serializer.getConstants(), metadata.getParams());
+      QueryModifiers modifiers = metadata.getModifiers();
+      if (modifiers.getLimitAsInteger() != null) {
+        query.setMaxResults(modifiers.getLimitAsInteger());
+      }
+      if (modifiers.getOffsetAsInteger() != null) {
+        query.setFirstResult(modifiers.getOffsetAsInteger());
+      }
+      return query.getResultList();
+    });
+  }
+
+  private <T> List<T> execute(StatelessWork<T> work) {
+    Session session = em.unwrap(Session.class);
+    // StatelessSession 은 영속성 컨텍스트를 모르므로 auto flush 처럼 대기 중인 변경을 먼저 내보낸다.
+    if (session.isDirty()) {
+      session.flush();
+    }
+    SessionFactory sessionFactory = session.getSessionFactory();
+    return session.doReturningWork(connection -> {
+      try (StatelessSession statelessSession = sessionFactory.withStatelessOptions()
+          .connection(connection)
+          .openStatelessSession()) {
+        return work.execute(statelessSession);
+      }
+    });
+  }
+
+  @FunctionalInterface
+  private interface StatelessWork<T> {
+
+    List<T> execute(StatelessSession statelessSession);
+  }
+}
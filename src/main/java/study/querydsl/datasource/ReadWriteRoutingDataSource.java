@@ -0,0 +1,143 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * readOnly 트랜잭션의 커넥션은 replica 풀에서, 나머지(쓰기, 트랜잭션 밖)는 primary 풀에서 가져온다.
+ * replica 지연이 max-lag 을 넘었거나 알 수 없으면 readOnly 트랜잭션도 primary 로 보낸다.
+ *
+ * 트랜잭션 매니저는 readOnly 표시를 하기 전에 커넥션부터 받으므로
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} 로 감싸서 첫 SQL 시점에 고르게 한다.
+ * (ReplicaRoutingConfig 참고) 한 트랜잭션은 끝까지 처음 고른 커넥션을 쓴다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements
+    AutoCloseable {
+
+  public enum Route {
+    PRIMARY, REPLICA
+  }
+
+  private final HikariDataSource primary;
+  private final HikariDataSource replica;
+  private final ReplicaLagMonitor lagMonitor;
+
+  private final LongAdder primaryConnections = new LongAdder();
+  private final LongAdder replicaConnections = new LongAdder();
+  // readOnly 였지만 replica 지연 때문에 primary 로 보낸 횟수
+  private final LongAdder lagFallbacks = new LongAdder();
+
+  ReadWriteRoutingDataSource(HikariDataSource primary, HikariDataSource replica,
+      ReplicaLagMonitor lagMonitor) {
+    this.primary = primary;
+    this.replica = replica;
+    this.lagMonitor = lagMonitor;
+    setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    Route route = currentRoute();
+    (route == Route.REPLICA ? replicaConnections : primaryConnections).increment();
+    return route;
+  }
+
+  private Route currentRoute() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return Route.PRIMARY;
+    }
+    if (!lagMonitor.isWithinTolerance()) {
+      lagFallbacks.increment();
+      return Route.PRIMARY;
+    }
+    return Route.REPLICA;
+  }
+
+  public Stats stats() {
+    return new Stats(PoolStats.of(primary, primaryConnections.sum()),
+        PoolStats.of(replica, replicaConnections.sum()), lagMonitor.lagMillis(),
+        lagMonitor.maxLagMillis(), lagMonitor.isWithinTolerance(), lagFallbacks.sum());
+  }
+
+  /**
+   * replica 가 따라잡은 primary 시각(epoch ms). 모르면 -1 ({@link ReplicationWatermark} 참고)
+   */
+  public long replicatedUpTo() {
+    return lagMonitor.replicatedUpTo();
+  }
+
+  ReplicaLagMonitor lagMonitor() {
+    return lagMonitor;
+  }
+
+  @Override
+  public void close() {
+    lagMonitor.close();
+    replica.close();
+    primary.close();
+  }
+
+  @Getter
+  @ToString
+  public static class Stats {
+
+    private final PoolStats primary;
+    private final PoolStats replica;
+    // 알 수 없으면 -1
+    private final long replicaLagMillis;
+    private final long maxLagMillis;
+    private final boolean replicaWithinTolerance;
+    private final long lagFallbacks;
+
+    Stats(PoolStats primary, PoolStats replica, long replicaLagMillis, long maxLagMillis,
+        boolean replicaWithinTolerance, long lagFallbacks) {
+      this.primary = primary;
+      this.replica = replica;
+      this.replicaLagMillis = replicaLagMillis;
+      this.maxLagMillis = maxLagMillis;
+      this.replicaWithinTolerance = replicaWithinTolerance;
+      this.lagFallbacks = lagFallbacks;
+    }
+  }
+
+  // 풀이 아직 시작되지 않았으면(첫 커넥션 전) active / idle / waiting 은 0 이다.
+  @Getter
+  @ToString
+  public static class PoolStats {
+
+    private final String poolName;
+    private final long routedConnections;
+    private final int maximumPoolSize;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+
+    PoolStats(String poolName, long routedConnections, int maximumPoolSize, int active,
+        int idle, int waiting) {
+      this.poolName = poolName;
+      this.routedConnections = routedConnections;
+      this.maximumPoolSize = maximumPoolSize;
+      this.active = active;
+      this.idle = idle;
+      this.waiting = waiting;
+    }
+
+    static PoolStats of(HikariDataSource pool, long routedConnections) {
+      HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+      if (bean == null) {
+        return new PoolStats(pool.getPoolName(), routedConnections, pool.getMaximumPoolSize(),
+            0, 0, 0);
+      }
+      return new PoolStats(pool.getPoolName(), routedConnections, pool.getMaximumPoolSize(),
+          bean.getActiveConnections(), bean.getIdleConnections(),
+          bean.getThreadsAwaitingConnection());
+    }
+  }
+}
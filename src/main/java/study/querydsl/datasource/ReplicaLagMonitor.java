@@ -0,0 +1,132 @@
+package study.querydsl.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * heartbeat 테이블로 replica 의 지연을 잰다. (pt-heartbeat 방식)
+ *
+ * check-interval 마다 primary 의 replica_heartbeat 에 현재 시각을 쓰고, replica 에서 복제된 값을 읽어 둔다.
+ * 지연은 조회 시점 기준 now - (replica 가 가진 마지막 heartbeat) 이므로 확인이 멈춰도 지연은 계속 커진다.
+ * 복제가 정상이어도 최대 check-interval 만큼은 지연으로 보이므로 max-lag 은 그보다 넉넉하게 둔다.
+ * replica 에 heartbeat 가 아직 없거나 읽지 못하면 지연을 알 수 없는 것으로 보고 허용 범위 밖으로 취급한다.
+ */
+@Slf4j
+class ReplicaLagMonitor implements AutoCloseable {
+
+  static final long UNKNOWN = -1;
+
+  private final DataSource primary;
+  private final DataSource replica;
+  private final long maxLagMillis;
+  private final ScheduledExecutorService scheduler;
+
+  private boolean tableCreated;
+  // replica 가 가진 마지막 heartbeat 시각(epoch ms). 모르면 UNKNOWN
+  private volatile long replicaBeatMillis = UNKNOWN;
+
+  ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag,
+      Duration checkInterval) {
+    if (checkInterval.isNegative() || checkInterval.isZero()) {
+      throw new IllegalArgumentException("check interval must be positive: " + checkInterval);
+    }
+    this.primary = primary;
+    this.replica = replica;
+    this.maxLagMillis = maxLag.toMillis();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replica-lag-monitor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::refresh, 0, checkInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  boolean isWithinTolerance() {
+    long lag = lagMillis();
+    return lag != UNKNOWN && lag <= maxLagMillis;
+  }
+
+  long lagMillis() {
+    long beat = replicaBeatMillis;
+    return beat == UNKNOWN ? UNKNOWN : Math.max(0, System.currentTimeMillis() - beat);
+  }
+
+  long maxLagMillis() {
+    return maxLagMillis;
+  }
+
+  // replica 가 가진 마지막 heartbeat. 이 시각 전에 primary 에 커밋된 변경은 replica 에도 있다. 모르면 UNKNOWN
+  long replicatedUpTo() {
+    return replicaBeatMillis;
+  }
+
+  /**
+   * primary 에 heartbeat 를 쓰고 replica 의 heartbeat 를 다시 읽는다. 스케줄러가 주기적으로 호출한다.
+   */
+  synchronized void refresh() {
+    try {
+      beat();
+    } catch (SQLException | RuntimeException e) {
+      log.debug("Failed to write heartbeat to primary", e);
+    }
+    try {
+      replicaBeatMillis = readReplicaBeat();
+    } catch (SQLException | RuntimeException e) {
+      log.debug("Failed to read heartbeat from replica", e);
+      replicaBeatMillis = UNKNOWN;
+    }
+  }
+
+  private void beat() throws SQLException {
+    try (Connection connection = primary.getConnection()) {
+      if (!tableCreated) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("create table if not exists replica_heartbeat"
+              + " (id int primary key, beat_at bigint not null)");
+        }
+        tableCreated = true;
+      }
+      long now = System.currentTimeMillis();
+      int updated;
+      try (PreparedStatement update = connection.prepareStatement(
+          "update replica_heartbeat set beat_at = ? where id = 1")) {
+        update.setLong(1, now);
+        updated = update.executeUpdate();
+      }
+      if (updated == 0) {
+        try (PreparedStatement insert = connection.prepareStatement(
+            "insert into replica_heartbeat (id, beat_at) values (1, ?)")) {
+          insert.setLong(1, now);
+          insert.executeUpdate();
+        }
+      }
+      if (!connection.getAutoCommit()) {
+        connection.commit();
+      }
+    }
+  }
+
+  private long readReplicaBeat() throws SQLException {
+    try (Connection connection = replica.getConnection();
+        PreparedStatement select = connection.prepareStatement(
+            "select beat_at from replica_heartbeat where id = 1");
+        ResultSet rs = select.executeQuery()) {
+      return rs.next() ? rs.getLong(1) : UNKNOWN;
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * db.replica.url 이 있으면 primary(spring.datasource) / replica 두 풀을 만들고 readOnly 트랜잭션을 replica 로 보낸다.
+ * 없으면 이 설정은 빠지고 스프링 부트 기본 DataSource 하나만 쓴다.
+ *
+ * 풀 설정은 둘 다 spring.datasource.hikari.* 를 따르고, replica 는 db.replica.hikari.* 로 덮어쓸 수 있다.
+ * readWriteRoutingDataSource 는 p6spy 로 감싸지 않는다. (decorator.datasource.exclude-beans)
+ * 감싸면 SQL 이 두 번 기록되고 stats 조회용으로 주입받을 수도 없다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "db.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+  @Bean
+  public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties,
+      Environment environment,
+      @Value("${db.replica.url}") String replicaUrl,
+      @Value("${db.replica.username:${spring.datasource.username:}}") String replicaUsername,
+      @Value("${db.replica.password:${spring.datasource.password:}}") String replicaPassword,
+      @Value("${db.replica.max-lag:1s}") Duration maxLag,
+      @Value("${db.replica.lag-check-interval:200ms}") Duration lagCheckInterval) {
+    Binder binder = Binder.get(environment);
+
+    HikariDataSource primary = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .build();
+    binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+    primary.setPoolName("primary");
+
+    HikariDataSource replica = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .url(replicaUrl)
+        .username(replicaUsername)
+        .password(replicaPassword)
+        .build();
+    binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+    binder.bind("db.replica.hikari", Bindable.ofInstance(replica));
+    replica.setPoolName("replica");
+    replica.setReadOnly(true);
+
+    return new ReadWriteRoutingDataSource(primary, replica,
+        new ReplicaLagMonitor(primary, replica, maxLag, lagCheckInterval));
+  }
+
+  // JPA, JdbcTemplate 등은 이 DataSource 를 쓴다. 실제 커넥션은 첫 SQL 에서 라우팅해서 가져온다.
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+  }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.datasource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * replica 가 따라잡은 primary 시각(epoch ms).
+ * 캐시, ETag 처럼 한 번 읽은 결과를 다시 쓰는 곳에서 readOnly 트랜잭션이 replica 에서 읽은 값이
+ * 마지막으로 알려진 변경을 담고 있는지 판단하는 데 쓴다. ({@link #includes})
+ * 읽기 전에 {@link #current()} 를 받아 두고 변경 시각과 비교한다. replica 를 설정하지 않았으면 항상 최신이다.
+ */
+@Component
+public class ReplicationWatermark {
+
+  private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+
+  public ReplicationWatermark(ObjectProvider<ReadWriteRoutingDataSource> routingDataSource) {
+    this.routingDataSource = routingDataSource;
+  }
+
+  /**
+   * replica 가 반영한 마지막 heartbeat 의 primary 시각. replica 가 없으면 Long.MAX_VALUE, 모르면 -1
+   */
+  public long current() {
+    ReadWriteRoutingDataSource dataSource = routingDataSource.getIfAvailable();
+    return dataSource == null ? Long.MAX_VALUE : dataSource.replicatedUpTo();
+  }
+
+  /**
+   * watermark 를 받은 뒤에 읽은 데이터에 changedAtMillis(커밋이 끝난 뒤의 시각)의 변경이 들어 있는지.
+   * heartbeat 는 그 시각보다 나중에 쓰였어야 같은 순서로 복제된 변경을 담고 있다고 볼 수 있다.
+   */
+  public static boolean includes(long watermark, long changedAtMillis) {
+    return watermark > changedAtMillis;
+  }
+}
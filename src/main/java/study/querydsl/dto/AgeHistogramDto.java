@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AgeHistogramDto {
+
+  private int bucketWidth;
+  // 버킷 전체(조회한 나이 범위)의 회원 수
+  private long total;
+  private List<Bucket> buckets;
+
+  // [ageFrom, ageTo] 양 끝 포함
+  @Data
+  @AllArgsConstructor
+  public static class Bucket {
+
+    private int ageFrom;
+    private int ageTo;
+    private long count;
+  }
+}
@@ -0,0 +1,120 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MemberTeamDto 목록의 열 단위(columnar) 표현. 행마다 객체를 만들지 않고 열별 배열에 바로 쌓는다.
+ * 팀은 (teamId, teamName) 사전으로 한 번씩만 담고, 행에는 사전 번호만 둔다. (팀 없음은 -1)
+ *
+ * <pre>
+ * {"size":3,"memberId":[1,2,3],"username":["a","b","c"],"age":[10,20,30],
+ *  "team":[0,0,-1],"teams":{"id":[7],"name":["teamA"]}}
+ * </pre>
+ */
+@JsonSerialize(using = MemberColumns.Serializer.class)
+public class MemberColumns {
+
+  public static final String MEDIA_TYPE = "application/vnd.querydsl.member-columns+json";
+
+  private int size;
+  private long[] memberIds;
+  private String[] usernames;
+  private int[] ages;
+  private int[] teamCodes;
+
+  private final List<Long> teamIds = new ArrayList<>();
+  private final List<String> teamNames = new ArrayList<>();
+  private final Map<Long, Integer> teamCodeById = new HashMap<>();
+
+  public MemberColumns() {
+    this(256);
+  }
+
+  public MemberColumns(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    memberIds = new long[capacity];
+    usernames = new String[capacity];
+    ages = new int[capacity];
+    teamCodes = new int[capacity];
+  }
+
+  public void add(long memberId, String username, int age, Long teamId, String teamName) {
+    if (size == memberIds.length) {
+      grow();
+    }
+    memberIds[size] = memberId;
+    usernames[size] = username;
+    ages[size] = age;
+    teamCodes[size] = teamCodeOf(teamId, teamName);
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int teamCodeOf(Long teamId, String teamName) {
+    if (teamId == null) {
+      return -1;
+    }
+    Integer code = teamCodeById.get(teamId);
+    if (code == null) {
+      code = teamIds.size();
+      teamCodeById.put(teamId, code);
+      teamIds.add(teamId);
+      teamNames.add(teamName);
+    }
+    return code;
+  }
+
+  private void grow() {
+    int capacity = memberIds.length * 2;
+    memberIds = Arrays.copyOf(memberIds, capacity);
+    usernames = Arrays.copyOf(usernames, capacity);
+    ages = Arrays.copyOf(ages, capacity);
+    teamCodes = Arrays.copyOf(teamCodes, capacity);
+  }
+
+  // 배열의 사용 중인 앞부분만 그대로 쓴다. (잘라낸 복사본을 만들지 않는다)
+  static class Serializer extends JsonSerializer<MemberColumns> {
+
+    @Override
+    public void serialize(MemberColumns columns, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      int size = columns.size;
+      gen.writeStartObject();
+      gen.writeNumberField("size", size);
+      gen.writeFieldName("memberId");
+      gen.writeArray(columns.memberIds, 0, size);
+      gen.writeFieldName("username");
+      gen.writeArray(columns.usernames, 0, size);
+      gen.writeFieldName("age");
+      gen.writeArray(columns.ages, 0, size);
+      gen.writeFieldName("team");
+      gen.writeArray(columns.teamCodes, 0, size);
+
+      gen.writeObjectFieldStart("teams");
+      gen.writeArrayFieldStart("id");
+      for (Long teamId : columns.teamIds) {
+        gen.writeNumber(teamId);
+      }
+      gen.writeEndArray();
+      gen.writeArrayFieldStart("name");
+      for (String teamName : columns.teamNames) {
+        gen.writeString(teamName);
+      }
+      gen.writeEndArray();
+      gen.writeEndObject();
+      gen.writeEndObject();
+    }
+  }
+}
@@ -7,6 +7,9 @@ public class MemberSearchCondition {
 
   // 회원명, 팀명, 나이
   private String username;
+  // 회원명 접두사 / 부분 문자열
+  private String usernamePrefix;
+  private String usernameContains;
   private String teamName;
   private Integer ageGoe;
   private Integer ageLoe;
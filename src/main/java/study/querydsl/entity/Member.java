@@ -2,18 +2,35 @@ package study.querydsl.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import study.querydsl.dao.MemberCountCacheInvalidator;
+import study.querydsl.dao.TableVersionsListener;
+import study.querydsl.dao.UsernameNgramIndexListener;
 
 @Entity
+@EntityListeners({MemberCountCacheInvalidator.class, TableVersionsListener.class,
+    UsernameNgramIndexListener.class})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// username 은 유일하지 않으므로 일반 인덱스로 둔다. (username 조건, usernamePrefix 범위 조건)
+// (team_id, age) 는 팀 + 나이 조건용이고, username 까지 넣어서 MemberTeamDto 의 member 컬럼을 인덱스만으로 읽는다.
+@Table(indexes = {
+    @Index(name = "idx_member_username", columnList = "username"),
+    @Index(name = "idx_member_team_age", columnList = "team_id, age, username")
+})
 @Getter
 @Setter
 @ToString(of = {"id", "username", "age"})
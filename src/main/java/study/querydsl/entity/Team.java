@@ -1,9 +1,12 @@
 package study.querydsl.entity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.AccessLevel;
@@ -11,8 +14,19 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import study.querydsl.dao.MemberCountCacheInvalidator;
+import study.querydsl.dao.TableVersionsListener;
+import study.querydsl.dao.TeamDictionaryInvalidator;
 
 @Entity
+@EntityListeners({MemberCountCacheInvalidator.class, TeamDictionaryInvalidator.class,
+    TableVersionsListener.class})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 @Getter
 @Setter
 @ToString(of = {"id", "name"})
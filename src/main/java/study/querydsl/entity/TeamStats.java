@@ -0,0 +1,35 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 팀별 member 집계 읽기 모델. Member 변경과 같은 트랜잭션에서 증분으로 갱신된다. (TeamStatsMaintainer 참고)
+ * 팀에 회원이 없으면 minAge / maxAge 는 null 이다.
+ */
+@Entity
+@Table(name = "team_stats")
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamStats {
+
+  @Id
+  @Column(name = "team_id")
+  private Long teamId;
+
+  private long memberCount;
+  private long ageSum;
+  private Integer minAge;
+  private Integer maxAge;
+
+  public TeamStats(Long teamId) {
+    this.teamId = teamId;
+  }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 마이크로초 기준 2의 거듭제곱 버킷 히스토그램. 기록 비용이 일정하고 분위값은 최대 2배 오차가 있다.
+ */
+public class LatencyHistogram {
+
+  // 버킷 i 는 [2^(i-1), 2^i) us. 마지막 버킷은 약 2^39 us(6일) 이상을 모두 담는다.
+  private static final int BUCKETS = 40;
+
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  public void record(long micros) {
+    histogram.incrementAndGet(bucketOf(micros));
+  }
+
+  public Percentiles percentiles() {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = histogram.get(i);
+      total += counts[i];
+    }
+    return new Percentiles(percentile(counts, total, 0.50), percentile(counts, total, 0.99),
+        percentile(counts, total, 0.999));
+  }
+
+  private static int bucketOf(long micros) {
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  // 해당 분위가 속한 버킷의 상한값(us).
+  private static long percentile(long[] counts, long total, double quantile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * quantile);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return i == 0 ? 0 : 1L << i;
+      }
+    }
+    return 1L << (counts.length - 1);
+  }
+
+  public record Percentiles(long p50Micros, long p99Micros, long p999Micros) {
+
+  }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 요청(또는 트랜잭션) 하나 안에서 같은 모양의 select 가 threshold 번을 넘게 실행되면 N+1 로 본다.
+ * 예) Member.team(LAZY) 을 루프에서 건드려서 team 을 id 로 한 건씩 조회하는 경우.
+ * mode=warn 이면 모양별로 한 번 경고 로그를 남기고, mode=fail 이면 {@link NPlusOneException} 을 던진다. (테스트용)
+ *
+ * 범위는 {@link NPlusOneFilter} 가 요청 단위로 열고, 요청 밖에서는 첫 select 시점의 트랜잭션이 끝날 때까지다.
+ * 둘 다 없으면 세지 않는다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector extends SimpleJdbcEventListener {
+
+  public enum Mode {
+    OFF, WARN, FAIL
+  }
+
+  private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+  private final SqlNormalizer sqlNormalizer;
+  private final Mode mode;
+  private final int threshold;
+
+  public NPlusOneDetector(SqlNormalizer sqlNormalizer,
+      @Value("${n-plus-one.mode:warn}") Mode mode,
+      @Value("${n-plus-one.threshold:10}") int threshold) {
+    this.sqlNormalizer = sqlNormalizer;
+    this.mode = mode;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+      SQLException e) {
+    if (mode == Mode.OFF || e != null || statementInformation.getSql() == null) {
+      return;
+    }
+    Scope scope = currentScope();
+    if (scope == null) {
+      return;
+    }
+    SqlNormalizer.NormalizedSql sql = sqlNormalizer.normalize(statementInformation.getSql());
+    if (!sql.select()) {
+      return;
+    }
+    int[] count = scope.counts.computeIfAbsent(sql.text(), k -> new int[1]);
+    if (++count[0] == threshold + 1) {
+      report(sql.text(), count[0]);
+    }
+  }
+
+  /**
+   * 요청 단위 범위를 연다. 이미 열려 있으면 null 을 돌려주고 닫을 것도 없다.
+   */
+  Scope openScope() {
+    if (mode == Mode.OFF || SCOPE.get() != null) {
+      return null;
+    }
+    Scope scope = new Scope();
+    SCOPE.set(scope);
+    return scope;
+  }
+
+  void closeScope(Scope scope) {
+    if (scope != null && SCOPE.get() == scope) {
+      SCOPE.remove();
+    }
+  }
+
+  private Scope currentScope() {
+    Scope scope = SCOPE.get();
+    if (scope != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return scope;
+    }
+    Scope transactionScope = new Scope();
+    SCOPE.set(transactionScope);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        closeScope(transactionScope);
+      }
+    });
+    return transactionScope;
+  }
+
+  private void report(String sql, int count) {
+    String message = String.format("Possible N+1: same select executed %d times in %s: %s",
+        count, QueryTag.current(), sql);
+    if (mode == Mode.FAIL) {
+      throw new NPlusOneException(message);
+    }
+    log.warn(message);
+  }
+
+  static final class Scope {
+
+    private final Map<String, int[]> counts = new HashMap<>();
+  }
+}
@@ -0,0 +1,8 @@
+package study.querydsl.monitoring;
+
+public class NPlusOneException extends IllegalStateException {
+
+  public NPlusOneException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * HTTP 요청 하나를 N+1 검사 범위로 묶는다. (open-in-view 로 뷰 렌더링 중 지연 로딩되는 것까지 포함)
+ */
+@Component
+@RequiredArgsConstructor
+public class NPlusOneFilter extends OncePerRequestFilter {
+
+  private final NPlusOneDetector nPlusOneDetector;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    NPlusOneDetector.Scope scope = nPlusOneDetector.openScope();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      nPlusOneDetector.closeScope(scope);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.monitoring;
+
+import java.util.function.Supplier;
+
+/**
+ * 현재 스레드에서 SQL 을 실행시키는 리포지토리 메서드 이름. (예: MemberRepositoryImpl.search)
+ * {@link QueryTagAspect} 가 dao 메서드 호출 동안 설정하고, p6spy 리스너가 SQL 통계를 묶는 데 쓴다.
+ */
+public final class QueryTag {
+
+  public static final String UNTAGGED = "untagged";
+
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private QueryTag() {
+  }
+
+  public static String current() {
+    String tag = CURRENT.get();
+    return tag == null ? UNTAGGED : tag;
+  }
+
+  /**
+   * 다른 스레드로 넘기는 작업이 호출한 쪽 태그(+ suffix)로 기록되도록 감싼다.
+   */
+  public static <T> Supplier<T> propagate(String suffix, Supplier<T> task) {
+    String tag = CURRENT.get() == null ? UNTAGGED + suffix : CURRENT.get() + suffix;
+    return () -> {
+      String previous = CURRENT.get();
+      CURRENT.set(tag);
+      try {
+        return task.get();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  static String enter(String tag) {
+    // MemberRepository.search -> MemberRepositoryImpl.search 처럼 중첩되면 안쪽(실제 구현) 이름으로 기록한다.
+    String previous = CURRENT.get();
+    CURRENT.set(tag);
+    return previous;
+  }
+
+  static void restore(String previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+public class QueryTagAspect {
+
+  @Around("execution(* study.querydsl.dao..*Repository*.*(..))")
+  public Object tag(ProceedingJoinPoint joinPoint) throws Throwable {
+    String tag = joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+        + joinPoint.getSignature().getName();
+    String previous = QueryTag.enter(tag);
+    try {
+      return joinPoint.proceed();
+    } finally {
+      QueryTag.restore(previous);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC 로 나가는 SQL 을 "모양" 단위로 묶기 위한 정규화.
+ * 공백을 하나로 합치고, 길이가 다른 IN (?, ?, ...) 목록은 같은 모양으로 본다.
+ * 같은 SQL 문자열이 반복되므로 결과를 캐시해서 실행마다 정규식을 돌리지 않는다.
+ */
+@Component
+public class SqlNormalizer {
+
+  private static final int MAX_CACHED = 2_000;
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+  private final Map<String, NormalizedSql> cache = new ConcurrentHashMap<>();
+
+  public NormalizedSql normalize(String rawSql) {
+    NormalizedSql sql = cache.get(rawSql);
+    if (sql == null) {
+      sql = doNormalize(rawSql);
+      if (cache.size() < MAX_CACHED) {
+        cache.put(rawSql, sql);
+      }
+    }
+    return sql;
+  }
+
+  private static NormalizedSql doNormalize(String rawSql) {
+    int bindCount = 0;
+    for (int i = 0; i < rawSql.length(); i++) {
+      if (rawSql.charAt(i) == '?') {
+        bindCount++;
+      }
+    }
+    String text = WHITESPACE.matcher(rawSql.trim()).replaceAll(" ");
+    text = IN_LIST.matcher(text).replaceAll("(?...)");
+    int commentEnd = text.startsWith("/*") ? text.indexOf("*/") : -1;
+    String body = commentEnd < 0 ? text : text.substring(commentEnd + 2).trim();
+    boolean select = body.regionMatches(true, 0, "select", 0, 6)
+        || body.regionMatches(true, 0, "with", 0, 4);
+    return new NormalizedSql(text, bindCount, select);
+  }
+
+  public record NormalizedSql(String text, int bindCount, boolean select) {
+
+  }
+}
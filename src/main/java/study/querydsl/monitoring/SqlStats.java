@@ -0,0 +1,90 @@
+package study.querydsl.monitoring;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * (리포지토리 메서드, 정규화된 SQL) 하나의 누적 통계.
+ * 지연 시간은 {@link LatencyHistogram} 으로 기록하므로 기록 비용이 일정하다.
+ */
+public class SqlStats {
+
+  @Getter
+  private final String tag;
+  @Getter
+  private final String sql;
+  @Getter
+  private final int bindCount;
+
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder totalMicros = new LongAdder();
+  private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0L);
+  private final LongAdder rows = new LongAdder();
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  SqlStats(String tag, String sql, int bindCount) {
+    this.tag = tag;
+    this.sql = sql;
+    this.bindCount = bindCount;
+  }
+
+  void recordExecution(long elapsedNanos, boolean failed) {
+    long micros = elapsedNanos / 1_000;
+    executions.increment();
+    if (failed) {
+      errors.increment();
+    }
+    totalMicros.add(micros);
+    maxMicros.accumulate(micros);
+    histogram.record(micros);
+  }
+
+  void recordRows(long count) {
+    rows.add(count);
+  }
+
+  public Snapshot snapshot() {
+    LatencyHistogram.Percentiles percentiles = histogram.percentiles();
+    long executionCount = executions.sum();
+    return new Snapshot(tag, sql, bindCount, executionCount, errors.sum(), rows.sum(),
+        totalMicros.sum(), executionCount == 0 ? 0 : totalMicros.sum() / executionCount,
+        maxMicros.get(),
+        percentiles.p50Micros(), percentiles.p99Micros(), percentiles.p999Micros());
+  }
+
+  @Getter
+  public static class Snapshot {
+
+    private final String tag;
+    private final String sql;
+    private final int bindCount;
+    private final long executions;
+    private final long errors;
+    private final long rows;
+    private final long totalMicros;
+    private final long meanMicros;
+    private final long maxMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+
+    Snapshot(String tag, String sql, int bindCount, long executions, long errors, long rows,
+        long totalMicros, long meanMicros, long maxMicros, long p50Micros, long p99Micros,
+        long p999Micros) {
+      this.tag = tag;
+      this.sql = sql;
+      this.bindCount = bindCount;
+      this.executions = executions;
+      this.errors = errors;
+      this.rows = rows;
+      this.totalMicros = totalMicros;
+      this.meanMicros = meanMicros;
+      this.maxMicros = maxMicros;
+      this.p50Micros = p50Micros;
+      this.p99Micros = p99Micros;
+      this.p999Micros = p999Micros;
+    }
+  }
+}
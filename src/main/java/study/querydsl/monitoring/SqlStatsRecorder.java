@@ -0,0 +1,81 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * p6spy 이벤트 리스너. p6spy-spring-boot-starter 가 JdbcEventListener 빈을 자동으로 등록한다.
+ * 실행 시간 / 조회 행 수 / 바인드 파라미터 수를 (QueryTag, 정규화된 SQL) 별로 모은다.
+ */
+@Component
+public class SqlStatsRecorder extends SimpleJdbcEventListener {
+
+  // 통계 항목 수의 상한. 넘으면 더 이상 새 SQL 을 따로 모으지 않는다.
+  private static final int MAX_STATEMENTS = 2_000;
+  private static final String OVERFLOW_SQL = "(other statements)";
+
+  private final SqlNormalizer sqlNormalizer;
+  private final Map<Key, SqlStats> stats = new ConcurrentHashMap<>();
+
+  public SqlStatsRecorder(SqlNormalizer sqlNormalizer) {
+    this.sqlNormalizer = sqlNormalizer;
+  }
+
+  @Override
+  public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+      SQLException e) {
+    SqlStats sqlStats = statsOf(statementInformation.getSql());
+    if (sqlStats != null) {
+      sqlStats.recordExecution(timeElapsedNanos, e != null);
+    }
+  }
+
+  @Override
+  public void onAfterResultSetClose(ResultSetInformation resultSetInformation, SQLException e) {
+    SqlStats sqlStats = statsOf(resultSetInformation.getStatementInformation().getSql());
+    if (sqlStats != null) {
+      sqlStats.recordRows(Math.max(0, resultSetInformation.getCurrRow() + 1));
+    }
+  }
+
+  public List<SqlStats.Snapshot> snapshot() {
+    List<SqlStats.Snapshot> result = new ArrayList<>(stats.size());
+    for (SqlStats sqlStats : stats.values()) {
+      result.add(sqlStats.snapshot());
+    }
+    result.sort(Comparator.comparingLong(SqlStats.Snapshot::getTotalMicros).reversed());
+    return result;
+  }
+
+  public void reset() {
+    stats.clear();
+  }
+
+  private SqlStats statsOf(String rawSql) {
+    if (rawSql == null || rawSql.isEmpty()) {
+      return null;
+    }
+    SqlNormalizer.NormalizedSql sql = sqlNormalizer.normalize(rawSql);
+    Key key = new Key(QueryTag.current(), sql.text());
+    SqlStats sqlStats = stats.get(key);
+    if (sqlStats != null) {
+      return sqlStats;
+    }
+    if (stats.size() >= MAX_STATEMENTS) {
+      key = new Key(key.tag, OVERFLOW_SQL);
+    }
+    return stats.computeIfAbsent(key, k -> new SqlStats(k.tag, k.sql, sql.bindCount()));
+  }
+
+  private record Key(String tag, String sql) {
+
+  }
+}
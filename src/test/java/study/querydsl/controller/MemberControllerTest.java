@@ -0,0 +1,187 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberColumns;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  // 버전은 커밋된 엔티티 변경(엔티티 리스너)으로 오르므로 테스트 트랜잭션 없이 커밋하고 직접 정리한다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void conditionalGetTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long[] ids = tx.execute(status -> {
+      Team teamA = new Team("etagTeamA");
+      em.persist(teamA);
+      Member member = new Member("etagMember1", 10, teamA);
+      em.persist(member);
+      return new Long[]{teamA.getId(), member.getId()};
+    });
+
+    try {
+      String etag = perform(get("/v1/members").param("teamName", "etagTeamA"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$[0].username").value("etagMember1"))
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+      assertThat(etag).isNotBlank();
+
+      perform(get("/v1/members").param("teamName", "etagTeamA")
+          .header(HttpHeaders.IF_NONE_MATCH, etag))
+          .andExpect(status().isNotModified())
+          .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+      // 조건이 다르면 ETag 도 다르다.
+      perform(get("/v1/members").param("teamName", "etagTeamB")
+          .header(HttpHeaders.IF_NONE_MATCH, etag))
+          .andExpect(status().isOk());
+
+      // member 가 바뀌고 커밋되면 같은 조건이라도 예전 ETag 로는 304 가 아니다.
+      tx.executeWithoutResult(status -> em.find(Member.class, ids[1]).setAge(20));
+      String changed = perform(get("/v1/members").param("teamName", "etagTeamA")
+          .header(HttpHeaders.IF_NONE_MATCH, etag))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$[0].age").value(20))
+          .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+      // team 변경도 마찬가지다.
+      tx.executeWithoutResult(status -> em.find(Team.class, ids[0]).setName("etagTeamA2"));
+      perform(get("/v1/members").param("teamName", "etagTeamA")
+          .header(HttpHeaders.IF_NONE_MATCH, changed))
+          .andExpect(status().isOk())
+          .andExpect(header().string(HttpHeaders.ETAG, not(changed)));
+    } finally {
+      tx.executeWithoutResult(status -> {
+        em.createQuery("delete from Member m where m.username like 'etag%'").executeUpdate();
+        em.createQuery("delete from TeamStats s where s.teamId = :teamId")
+            .setParameter("teamId", ids[0])
+            .executeUpdate();
+        em.createQuery("delete from Team t where t.name like 'etagTeam%'").executeUpdate();
+      });
+    }
+  }
+
+  @Test
+  public void columnarFormatTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    Member member1 = new Member("member1", 10, teamA);
+    Member member2 = new Member("member2", 20, teamA);
+    Member member3 = new Member("member3", 30);
+    em.persist(member1);
+    em.persist(member2);
+    em.persist(member3);
+    em.flush();
+
+    perform(get("/v1/members").param("ageLoe", "30").accept(MemberColumns.MEDIA_TYPE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MemberColumns.MEDIA_TYPE))
+        .andExpect(jsonPath("$.size").value(3))
+        .andExpect(jsonPath("$.memberId.length()").value(3))
+        .andExpect(jsonPath("$.teams.id[0]").value(teamA.getId()))
+        .andExpect(jsonPath("$.teams.name[0]").value("teamA"))
+        .andExpect(jsonPath("$.teams.name.length()").value(1))
+        .andExpect(jsonPath("$.team", containsInAnyOrder(0, 0, -1)));
+  }
+
+  // 컨트롤러가 CompletableFuture 를 돌려주므로 비동기 디스패치까지 마친 결과를 본다.
+  @Test
+  public void keysetSizeAndSortTest() throws Exception {
+    em.persist(new Member("member1", 10));
+    em.flush();
+
+    mockMvc.perform(get("/v3/members").param("size", "100000"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.size").value(100));
+    mockMvc.perform(get("/v3/members").param("size", "0"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/v3/members").param("sort", "username").param("sort", "age"))
+        .andExpect(status().isBadRequest());
+
+    // 정렬 없이 만든 커서를 다른 정렬에 넘기면 400
+    em.persist(new Member("member2", 20));
+    em.flush();
+    String cursor = JsonPath.read(mockMvc.perform(get("/v3/members").param("size", "1"))
+        .andReturn().getResponse().getContentAsString(), "$.nextCursor");
+    mockMvc.perform(get("/v3/members").param("cursor", cursor).param("sort", "username"))
+        .andExpect(status().isBadRequest());
+  }
+
+  // StreamingResponseBody 는 다른 스레드에서 쓰므로 테스트 트랜잭션 없이 커밋하고 직접 정리한다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void ndjsonStreamTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long[] ids = tx.execute(status -> {
+      Team team = new Team("ndjsonTeam");
+      em.persist(team);
+      Member member1 = new Member("ndjson1", 10, team);
+      Member member2 = new Member("ndjson2", 20, team);
+      em.persist(member1);
+      em.persist(member2);
+      return new Long[]{team.getId(), member1.getId(), member2.getId()};
+    });
+
+    try {
+      String expected = "{\"memberId\":" + ids[1] + ",\"username\":\"ndjson1\",\"age\":10,"
+          + "\"teamId\":" + ids[0] + ",\"teamName\":\"ndjsonTeam\"}\n"
+          + "{\"memberId\":" + ids[2] + ",\"username\":\"ndjson2\",\"age\":20,"
+          + "\"teamId\":" + ids[0] + ",\"teamName\":\"ndjsonTeam\"}\n";
+      perform(get("/v1/members/stream").param("teamName", "ndjsonTeam"))
+          .andExpect(status().isOk())
+          .andExpect(content().bytes(expected.getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      tx.executeWithoutResult(status -> {
+        em.createQuery("delete from Member m where m.username like 'ndjson%'").executeUpdate();
+        em.createQuery("delete from TeamStats s where s.teamId = :teamId")
+            .setParameter("teamId", ids[0])
+            .executeUpdate();
+        em.createQuery("delete from Team t where t.name = 'ndjsonTeam'").executeUpdate();
+      });
+    }
+  }
+
+  private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult result = mockMvc.perform(request).andReturn();
+    return mockMvc.perform(asyncDispatch(result));
+  }
+}
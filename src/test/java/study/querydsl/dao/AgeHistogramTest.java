@@ -0,0 +1,204 @@
+package study.querydsl.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import jakarta.persistence.EntityManager;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.AgeHistogramDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+// 변경은 커밋된 뒤에 반영되므로 테스트 트랜잭션 없이 커밋하고 직접 정리한다.
+@SpringBootTest
+class AgeHistogramTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  AgeHistogram ageHistogram;
+
+  @Autowired
+  MemberRepository memberRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  // 다른 테스트의 정리(bulk delete)는 이벤트가 없으므로 비우고 시작한다.
+  @BeforeEach
+  void setUp() {
+    ageHistogram.invalidate();
+  }
+
+  @AfterEach
+  void cleanUp() {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      em.createQuery("delete from Member").executeUpdate();
+      em.createQuery("delete from Team").executeUpdate();
+      em.createQuery("delete from TeamStats").executeUpdate();
+    });
+    ageHistogram.invalidate();
+  }
+
+  @Test
+  public void histogramTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long[] ids = tx.execute(status -> {
+      Team teamA = new Team("teamA");
+      Team teamB = new Team("teamB");
+      em.persist(teamA);
+      em.persist(teamB);
+      Member member1 = new Member("member1", 10, teamA);
+      Member member2 = new Member("member2", 15, teamA);
+      em.persist(member1);
+      em.persist(member2);
+      em.persist(new Member("member3", 20, teamA));
+      em.persist(new Member("member4", 25, teamB));
+      em.persist(new Member("member5", 40, teamB));
+      em.persist(new Member("member6", 33));
+      return new Long[]{teamB.getId(), member1.getId(), member2.getId()};
+    });
+
+    AgeHistogramDto all = ageHistogram.histogram(10, null, null, null);
+    assertThat(all.getTotal()).isEqualTo(6);
+    assertThat(all.getBuckets())
+        .extracting("ageFrom", "ageTo", "count")
+        .containsExactly(tuple(10, 19, 2L), tuple(20, 29, 2L), tuple(30, 39, 1L),
+            tuple(40, 49, 1L));
+
+    AgeHistogramDto teamA = ageHistogram.histogram(10, "teamA", 12, null);
+    assertThat(teamA.getBuckets())
+        .extracting("ageFrom", "ageTo", "count")
+        .containsExactly(tuple(12, 19, 1L), tuple(20, 29, 1L));
+    assertThat(ageHistogram.count("teamB", 20, 40)).isEqualTo(2);
+    assertThat(ageHistogram.histogram(10, "unknown", null, null).getBuckets()).isEmpty();
+
+    // 나이 변경, 팀 이동, 삭제는 커밋 후 증분으로 반영된다.
+    tx.executeWithoutResult(status -> {
+      Member member1 = em.find(Member.class, ids[1]);
+      member1.setAge(35);
+      member1.changeTeam(em.find(Team.class, ids[0]));
+      em.remove(em.find(Member.class, ids[2]));
+    });
+    assertThat(ageHistogram.count(null, 10, 19)).isEqualTo(0);
+    assertThat(ageHistogram.count("teamA", null, null)).isEqualTo(1);
+    assertThat(ageHistogram.count("teamB", 30, 39)).isEqualTo(1);
+    assertThat(ageHistogram.count(null, 30, 39)).isEqualTo(2);
+
+    // 롤백된 변경은 반영되지 않는다.
+    tx.executeWithoutResult(status -> {
+      em.persist(new Member("member7", 50, em.find(Team.class, ids[0])));
+      em.flush();
+      status.setRollbackOnly();
+    });
+    assertThat(ageHistogram.count(null, null, null)).isEqualTo(5);
+
+    // bulk 연산 뒤에는 다시 센다.
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamB");
+    memberRepository.bulkAddAge(condition, 1);
+    assertThat(ageHistogram.histogram(10, "teamB", null, null).getBuckets())
+        .extracting("ageFrom", "ageTo", "count")
+        .containsExactly(tuple(20, 29, 1L), tuple(30, 39, 1L), tuple(40, 49, 1L));
+  }
+
+  // [0, MAX_AGE] 밖의 나이는 끝 구간으로 잘라 넣지 않고, 있는 동안에는 DB 에서 센다.
+  @Test
+  public void ageBoundaryTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    tx.executeWithoutResult(status -> {
+      em.persist(new Member("member1", 0));
+      em.persist(new Member("member2", AgeHistogram.MAX_AGE));
+    });
+
+    AgeHistogramDto inRange = ageHistogram.histogram(10, null, null, null);
+    assertThat(inRange.getTotal()).isEqualTo(2);
+    assertThat(inRange.getBuckets().get(0))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(0, 9, 1L);
+    assertThat(inRange.getBuckets().get(inRange.getBuckets().size() - 1))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(1020, 1023, 1L);
+
+    Long[] ids = tx.execute(status -> {
+      Member underflow = new Member("member3", -1);
+      Member overflow = new Member("member4", AgeHistogram.MAX_AGE + 1);
+      em.persist(underflow);
+      em.persist(overflow);
+      return new Long[]{underflow.getId(), overflow.getId()};
+    });
+
+    assertThat(ageHistogram.count(null, null, null)).isEqualTo(4);
+    assertThat(ageHistogram.count(null, 0, AgeHistogram.MAX_AGE)).isEqualTo(2);
+    assertThat(ageHistogram.count(null, AgeHistogram.MAX_AGE + 1, null)).isEqualTo(1);
+    assertThat(ageHistogram.count(null, null, -1)).isEqualTo(1);
+    AgeHistogramDto outOfRange = ageHistogram.histogram(10, null, null, null);
+    assertThat(outOfRange.getTotal()).isEqualTo(4);
+    assertThat(outOfRange.getBuckets().get(0))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(-10, -1, 1L);
+    assertThat(outOfRange.getBuckets().get(1))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(0, 9, 1L);
+    assertThat(outOfRange.getBuckets().get(outOfRange.getBuckets().size() - 1))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(1020, 1029, 2L);
+
+    // 범위 밖 회원이 지워지면 다시 메모리로 답한다.
+    tx.executeWithoutResult(status -> {
+      em.remove(em.find(Member.class, ids[0]));
+      em.remove(em.find(Member.class, ids[1]));
+    });
+    assertThat(ageHistogram.count(null, null, null)).isEqualTo(2);
+    AgeHistogramDto removed = ageHistogram.histogram(10, null, null, null);
+    assertThat(removed.getBuckets().get(removed.getBuckets().size() - 1))
+        .extracting("ageFrom", "ageTo", "count").containsExactly(1020, 1023, 1L);
+  }
+
+  // DB 커밋 후 반영(afterCompletion) 전에 다른 스레드가 다시 세도 커밋된 변경을 두 번 세지 않는다.
+  @Test
+  public void loadBetweenCommitAndApplyTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long teamId = tx.execute(status -> {
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      em.persist(new Member("member1", 10, teamA));
+      return teamA.getId();
+    });
+    ageHistogram.invalidate();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    AtomicLong countAfterCommit = new AtomicLong(-1);
+    try {
+      tx.executeWithoutResult(status -> {
+        em.persist(new Member("member2", 20, em.find(Team.class, teamId)));
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+              @Override
+              public void afterCommit() {
+                try {
+                  countAfterCommit.set(
+                      executor.submit(() -> ageHistogram.count(null, null, null)).get());
+                } catch (Exception e) {
+                  throw new IllegalStateException(e);
+                }
+              }
+            });
+      });
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(countAfterCommit.get()).isEqualTo(2);
+    assertThat(ageHistogram.count(null, null, null)).isEqualTo(2);
+    assertThat(ageHistogram.count("teamA", 20, 20)).isEqualTo(1);
+  }
+}
@@ -6,8 +6,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import com.querydsl.core.QueryFactory;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +31,9 @@ class MemberJpaRepositoryTest {
   @Autowired
   MemberJpaRepository memberJpaRepository;
 
+  @Autowired
+  MemberSearchQueryRegistry searchQueryRegistry;
+
 
   @BeforeEach
   void setUp() {
@@ -49,6 +55,117 @@ class MemberJpaRepositoryTest {
     assertThat(result1).containsExactly(member);
   }
 
+  // username 은 유일하지 않다. 모든 findByUsername 변형이 같은 이름의 회원을 모두 돌려준다.
+  @Test
+  public void findByDuplicateUsernameTest() throws Exception {
+    Member member1 = new Member("member1", 10);
+    Member member2 = new Member("member1", 20);
+    memberJpaRepository.save(member1);
+    memberJpaRepository.save(member2);
+    em.flush();
+
+    assertThat(memberJpaRepository.findByUsername("member1"))
+        .containsExactlyInAnyOrder(member1, member2);
+    assertThat(memberJpaRepository.findByUsername_QueryDls("member1"))
+        .containsExactlyInAnyOrder(member1, member2);
+    assertThat(memberJpaRepository.findByUsername_QueryDlsReadOnly("member1"))
+        .extracting("id").containsExactlyInAnyOrder(member1.getId(), member2.getId());
+  }
+
+  @Test
+  public void readOnlyFinderTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    Member member = new Member("member1", 10, teamA);
+    memberJpaRepository.save(member);
+
+    List<Member> all = memberJpaRepository.findAllReadOnly();
+    List<Member> allQueryDsl = memberJpaRepository.findAll_QueryDslReadOnly();
+    List<Member> byUsername = memberJpaRepository.findByUsernameReadOnly("member1");
+    List<Member> byUsernameQueryDsl = memberJpaRepository.findByUsername_QueryDlsReadOnly("member1");
+
+    for (List<Member> result : List.of(all, allQueryDsl, byUsername, byUsernameQueryDsl)) {
+      assertThat(result).hasSize(1);
+      Member found = result.get(0);
+      assertThat(found).isNotSameAs(member);
+      assertThat(em.contains(found)).isFalse();
+      assertThat(found.getId()).isEqualTo(member.getId());
+      assertThat(found.getUsername()).isEqualTo("member1");
+      assertThat(found.getTeam().getId()).isEqualTo(teamA.getId());
+    }
+  }
+
+  @Test
+  public void findAllByIdsTest() throws Exception {
+    List<Team> teams = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Team team = new Team("team" + i);
+      em.persist(team);
+      teams.add(team);
+    }
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      Member member = new Member("member" + i, i % 100, teams.get(i % 3));
+      em.persist(member);
+      ids.add(member.getId());
+    }
+    em.flush();
+    em.clear();
+
+    // 순서를 뒤집고 중복/없는 id/null 을 섞는다. 600 개는 512 + 88(-> 128 로 패딩) 두 chunk 가 된다.
+    List<Long> requested = new ArrayList<>(ids);
+    Collections.reverse(requested);
+    requested.add(ids.get(0));
+    requested.add(-1L);
+    requested.add(null);
+
+    List<Member> result = memberJpaRepository.findAllByIds(requested);
+
+    assertThat(result).extracting(Member::getId)
+        .containsExactlyElementsOf(requested.subList(0, ids.size()));
+
+    // team 프록시 하나를 초기화하면 @BatchSize 로 나머지 팀도 같이 초기화된다.
+    assertThat(result.get(0).getTeam().getName()).isNotNull();
+    assertThat(result).allSatisfy(m -> assertThat(Hibernate.isInitialized(m.getTeam())).isTrue());
+  }
+
+  @Test
+  public void scanColumnsTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    for (int i = 0; i < 10; i++) {
+      em.persist(new Member("member" + i, i, i < 9 ? teamA : null));
+    }
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(1);
+
+    MemberColumnBuffer buffer = new MemberColumnBuffer(4);
+    List<Integer> batchSizes = new ArrayList<>();
+    long[] ageSum = {0};
+    int[] noTeam = {0};
+    memberJpaRepository.scanColumns(condition, buffer, batch -> {
+      batchSizes.add(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        ageSum[0] += batch.age(i);
+        if (batch.teamId(i) == MemberColumnBuffer.NO_TEAM) {
+          noTeam[0]++;
+        } else {
+          assertThat(batch.teamId(i)).isEqualTo(teamA.getId());
+        }
+      }
+    });
+
+    assertThat(batchSizes).containsExactly(4, 4, 1);
+    assertThat(ageSum[0]).isEqualTo(45);
+    assertThat(noTeam[0]).isEqualTo(1);
+
+    condition.setTeamName("teamA");
+    int[] teamACount = {0};
+    memberJpaRepository.scanColumns(condition, buffer, batch -> teamACount[0] += batch.size());
+    assertThat(teamACount[0]).isEqualTo(8);
+  }
+
   @Test
   public void searchTest() throws Exception {
     Team teamA = new Team("teamA");
@@ -76,5 +193,65 @@ class MemberJpaRepositoryTest {
     assertThat(result).extracting("username").containsExactly("member4");
   }
 
+  @Test
+  public void searchQueryShapeTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    for (int i = 0; i < 10; i++) {
+      em.persist(new Member("member" + i, i * 10, teamA));
+    }
+
+    MemberSearchCondition first = new MemberSearchCondition();
+    first.setTeamName("teamA");
+    first.setAgeGoe(30);
+    MemberSearchCondition second = new MemberSearchCondition();
+    second.setTeamName("teamB");
+    second.setAgeGoe(70);
+    second.setUsername("");
+
+    assertThat(searchQueryRegistry.jpql(first)).isEqualTo(searchQueryRegistry.jpql(second));
+    assertThat(memberJpaRepository.search(first)).usingRecursiveFieldByFieldElementComparator()
+        .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(first));
+    assertThat(memberJpaRepository.search(second)).isEmpty();
+  }
+
+  @Test
+  public void searchByUsernamePrefixTest() throws Exception {
+    em.persist(new Member("alice", 10));
+    em.persist(new Member("alicia", 20));
+    em.persist(new Member("malice", 30));
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsernamePrefix("ali");
+    assertThat(MemberSearchQueryRegistry.supports(condition)).isFalse();
+    assertThat(memberJpaRepository.search(condition)).extracting("username")
+        .containsExactlyInAnyOrder("alice", "alicia");
+
+    condition.setUsernamePrefix(null);
+    condition.setUsernameContains("lic");
+    int[] scanned = {0};
+    memberJpaRepository.scanColumns(condition, new MemberColumnBuffer(2),
+        batch -> scanned[0] += batch.size());
+    assertThat(scanned[0]).isEqualTo(3);
+  }
+
+  @Test
+  public void searchStreamTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    for (int i = 0; i < 10; i++) {
+      em.persist(new Member("member" + i, i, teamA));
+    }
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(5);
+
+    List<MemberTeamDto> streamed = new ArrayList<>();
+    memberJpaRepository.searchStream(condition, streamed::add);
+
+    assertThat(streamed).usingRecursiveFieldByFieldElementComparator()
+        .containsExactlyInAnyOrderElementsOf(memberJpaRepository.search(condition));
+    assertThat(streamed).hasSize(5);
+  }
 
 }
@@ -1,6 +1,8 @@
 package study.querydsl.dao;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 
 import jakarta.persistence.EntityManager;
@@ -8,7 +10,15 @@ import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dao.support.KeysetPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -24,6 +34,18 @@ class MemberRepositoryTest {
   @Autowired
   MemberRepository memberRepository;
 
+  @Autowired
+  MemberCountCache memberCountCache;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  @Autowired
+  UsernameNgramIndex usernameNgramIndex;
+
   @Test
   public void basicTest() throws Exception {
     Member member = new Member("member1", 10);
@@ -65,6 +87,343 @@ class MemberRepositoryTest {
     List<MemberTeamDto> result = memberRepository.search(condition);
     assertThat(result).extracting("username").containsExactly("member4");
   }
-  
 
+  // 커밋된 데이터로만 캐시가 채워지는지 보려고 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void searchPageComplexCountCacheTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long teamId = tx.execute(status -> {
+      Team teamA = new Team("countTeamA");
+      em.persist(teamA);
+      for (int i = 0; i < 4; i++) {
+        em.persist(new Member("count" + i, 10 + i, teamA));
+      }
+      return teamA.getId();
+    });
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("countTeamA");
+    PageRequest pageRequest = PageRequest.of(0, 2);
+
+    try {
+      MemberCountCache.Stats before = memberCountCache.stats();
+      memberRepository.searchPageComplex(condition, pageRequest);
+      Page<MemberTeamDto> cached = memberRepository.searchPageComplex(condition, pageRequest);
+      MemberCountCache.Stats after = memberCountCache.stats();
+
+      assertThat(cached.getTotalElements()).isEqualTo(4);
+      assertThat(after.getMissCount() - before.getMissCount()).isEqualTo(1);
+      assertThat(after.getHitCount() - before.getHitCount()).isEqualTo(1);
+
+      // 같은 트랜잭션에서 flush 된 행은 count 에 보이지만 캐시에 남지 않으므로 롤백 후에는 원래 값이다.
+      tx.executeWithoutResult(status -> {
+        em.persist(new Member("count4", 14, em.find(Team.class, teamId)));
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest)
+            .getTotalElements()).isEqualTo(5);
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest)
+            .getTotalElements()).isEqualTo(5);
+        status.setRollbackOnly();
+      });
+      assertThat(memberRepository.searchPageComplex(condition, pageRequest)
+          .getTotalElements()).isEqualTo(4);
+
+      // 커밋된 변경은 다음 조회에서 다시 센다.
+      tx.executeWithoutResult(
+          status -> em.persist(new Member("count4", 14, em.find(Team.class, teamId))));
+      assertThat(memberRepository.searchPageComplex(condition, pageRequest)
+          .getTotalElements()).isEqualTo(5);
+    } finally {
+      tx.executeWithoutResult(status -> {
+        em.createQuery("delete from Member m where m.username like 'count%'").executeUpdate();
+        em.createQuery("delete from TeamStats s where s.teamId = :teamId")
+            .setParameter("teamId", teamId)
+            .executeUpdate();
+        em.createQuery("delete from Team t where t.name like 'countTeam%'").executeUpdate();
+      });
+      memberCountCache.invalidateAll();
+    }
+  }
+
+  // 커밋되지 않은 이름 변경 / 삭제를 본 상태로 색인이 만들어져도 롤백 후 검색에 남지 않는다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void usernameContainsRollbackTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long[] ids = tx.execute(status -> {
+      Member alice = new Member("ngramAlice", 10);
+      Member malice = new Member("ngramMalice", 20);
+      em.persist(alice);
+      em.persist(malice);
+      return new Long[]{alice.getId(), malice.getId()};
+    });
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsernameContains("lic");
+
+    try {
+      usernameNgramIndex.invalidate();
+      tx.executeWithoutResult(status -> {
+        em.find(Member.class, ids[0]).setUsername("ngramBob");
+        em.remove(em.find(Member.class, ids[1]));
+        em.flush();
+        assertThat(memberRepository.search(condition)).isEmpty();
+        status.setRollbackOnly();
+      });
+      assertThat(memberRepository.search(condition)).extracting("username")
+          .containsExactlyInAnyOrder("ngramAlice", "ngramMalice");
+
+      // 변경 없는 트랜잭션에서 만든 색인은 캐시되고, 커밋된 변경은 증분으로 반영된다.
+      tx.executeWithoutResult(status -> em.find(Member.class, ids[0]).setUsername("ngramBob"));
+      assertThat(memberRepository.search(condition)).extracting("username")
+          .containsExactly("ngramMalice");
+    } finally {
+      tx.executeWithoutResult(status -> em.createQuery(
+          "delete from Member m where m.username like 'ngram%'").executeUpdate());
+      usernameNgramIndex.invalidate();
+    }
+  }
+
+  // 이미 만들어진 색인에 다른 트랜잭션에서 커밋된 회원이 반영되어 검색된다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void usernameContainsCommittedInsertTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    tx.executeWithoutResult(status -> em.persist(new Member("ngramAlice", 10)));
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsernameContains("lic");
+
+    try {
+      usernameNgramIndex.invalidate();
+      assertThat(memberRepository.search(condition)).extracting("username")
+          .containsExactly("ngramAlice");
+
+      tx.executeWithoutResult(status -> em.persist(new Member("ngramBolicia", 20)));
+      assertThat(memberRepository.search(condition)).extracting("username")
+          .containsExactlyInAnyOrder("ngramAlice", "ngramBolicia");
+    } finally {
+      tx.executeWithoutResult(status -> em.createQuery(
+          "delete from Member m where m.username like 'ngram%'").executeUpdate());
+      usernameNgramIndex.invalidate();
+    }
+  }
+
+  @Test
+  public void searchPageSimpleDerivedCountTest() throws Exception {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    for (int i = 0; i < 5; i++) {
+      em.persist(new Member("member" + i, 10 + i, i < 3 ? teamA : teamB));
+    }
+    em.persist(new Member("member5", 15));
+
+    // 팀 조건이 없으면 team left join 을 뺀 count 를 쓴다. 팀 없는 회원도 세어야 한다.
+    Page<MemberTeamDto> all = memberRepository.searchPageSimple(new MemberSearchCondition(),
+        PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "username")));
+    assertThat(all.getTotalElements()).isEqualTo(6);
+    assertThat(all.getContent()).extracting("username").containsExactly("member5", "member4");
+
+    MemberSearchCondition byTeam = new MemberSearchCondition();
+    byTeam.setTeamName("teamB");
+    byTeam.setAgeGoe(14);
+    Page<MemberTeamDto> teamB2 = memberRepository.searchPageSimple(byTeam, PageRequest.of(0, 1));
+    assertThat(teamB2.getTotalElements()).isEqualTo(1);
+    assertThat(teamB2.getContent()).extracting("teamName").containsExactly("teamB");
+
+    byTeam.setAgeGoe(null);
+    assertThat(memberRepository.searchPageSimple(byTeam, PageRequest.of(0, 1))
+        .getTotalElements()).isEqualTo(2);
+  }
+
+  @Test
+  public void usernamePrefixAndContainsTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    em.persist(new Member("alice", 10, teamA));
+    em.persist(new Member("alicia", 20, teamA));
+    em.persist(new Member("malice", 30, teamA));
+    Member bob = new Member("bob", 40);
+    em.persist(bob);
+
+    MemberSearchCondition prefix = new MemberSearchCondition();
+    prefix.setUsernamePrefix("ali");
+    assertThat(memberRepository.search(prefix)).extracting("username")
+        .containsExactlyInAnyOrder("alice", "alicia");
+
+    MemberSearchCondition contains = new MemberSearchCondition();
+    contains.setUsernameContains("lic");
+    assertThat(memberRepository.search(contains)).extracting("username")
+        .containsExactlyInAnyOrder("alice", "alicia", "malice");
+    assertThat(memberRepository.searchPageComplex(contains, PageRequest.of(0, 2))
+        .getTotalElements()).isEqualTo(3);
+
+    // 3글자보다 짧으면 색인 없이 LIKE 로만 거른다.
+    MemberSearchCondition shortContains = new MemberSearchCondition();
+    shortContains.setUsernameContains("li");
+    assertThat(memberRepository.search(shortContains)).hasSize(3);
+
+    MemberSearchCondition both = new MemberSearchCondition();
+    both.setUsernamePrefix("ma");
+    both.setUsernameContains("lic");
+    assertThat(memberRepository.search(both)).extracting("username").containsExactly("malice");
+
+    MemberSearchCondition none = new MemberSearchCondition();
+    none.setUsernameContains("xyz");
+    assertThat(memberRepository.search(none)).isEmpty();
+
+    // 아직 커밋되지 않은 같은 트랜잭션의 변경도 후보에 들어간다.
+    bob.setUsername("bolic");
+    assertThat(memberRepository.search(contains)).extracting("username")
+        .containsExactlyInAnyOrder("alice", "alicia", "malice", "bolic");
+  }
+
+  @Test
+  public void searchKeysetTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    for (int i = 0; i < 5; i++) {
+      em.persist(new Member("member" + i, i % 2 == 0 ? 20 : 10, teamA));
+    }
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    Sort sort = Sort.by(Sort.Direction.DESC, "age");
+
+    KeysetPage<MemberTeamDto> first = memberRepository.searchKeyset(condition, null, 2, sort);
+    assertThat(first.getContent()).extracting("username").containsExactly("member4", "member2");
+    assertThat(first.isHasNext()).isTrue();
+
+    KeysetPage<MemberTeamDto> second = memberRepository.searchKeyset(condition,
+        first.getNextCursor(), 2, sort);
+    assertThat(second.getContent()).extracting("username").containsExactly("member0", "member3");
+
+    KeysetPage<MemberTeamDto> last = memberRepository.searchKeyset(condition,
+        second.getNextCursor(), 2, sort);
+    assertThat(last.getContent()).extracting("username").containsExactly("member1");
+    assertThat(last.isHasNext()).isFalse();
+    assertThat(last.getNextCursor()).isNull();
+  }
+
+  // 정렬 키가 null 인 행은 방향과 관계없이 맨 뒤에 오고, null 에서 끊긴 커서로도 다음 페이지를 읽는다.
+  @Test
+  public void searchKeysetNullSortKeyTest() throws Exception {
+    Member named1 = new Member("b", 10);
+    Member named2 = new Member("a", 10);
+    Member unnamed1 = new Member(null, 10);
+    Member unnamed2 = new Member(null, 10);
+    em.persist(named1);
+    em.persist(named2);
+    em.persist(unnamed1);
+    em.persist(unnamed2);
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    for (Sort.Direction direction : Sort.Direction.values()) {
+      Sort sort = Sort.by(direction, "username");
+      KeysetPage<MemberTeamDto> first = memberRepository.searchKeyset(condition, null, 3, sort);
+      assertThat(first.getContent()).extracting("username")
+          .containsExactly(direction.isAscending() ? "a" : "b",
+              direction.isAscending() ? "b" : "a", null);
+
+      KeysetPage<MemberTeamDto> second = memberRepository.searchKeyset(condition,
+          first.getNextCursor(), 3, sort);
+      assertThat(second.getContent()).extracting("memberId")
+          .containsExactly(direction.isAscending() ? unnamed2.getId() : unnamed1.getId());
+      assertThat(second.isHasNext()).isFalse();
+    }
+
+    assertThatThrownBy(() -> memberRepository.searchKeyset(condition, null, 3,
+        Sort.by("username", "age")))
+        .isInstanceOfAny(IllegalArgumentException.class,
+            InvalidDataAccessApiUsageException.class);
+  }
+
+  // 커서는 만든 정렬에서만 쓸 수 있다. (정렬 없이 만든 커서를 username 정렬에 넘기면 null 구간으로 읽히지 않는다)
+  @Test
+  public void searchKeysetCursorSortMismatchTest() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      em.persist(new Member("member" + i, 10 + i));
+    }
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    String idCursor = memberRepository.searchKeyset(condition, null, 1, Sort.unsorted())
+        .getNextCursor();
+    String ageCursor = memberRepository.searchKeyset(condition, null, 1,
+        Sort.by(Sort.Direction.ASC, "age")).getNextCursor();
+
+    assertThatThrownBy(() -> memberRepository.searchKeyset(condition, idCursor, 1,
+        Sort.by("username")))
+        .isInstanceOfAny(IllegalArgumentException.class,
+            InvalidDataAccessApiUsageException.class);
+    assertThatThrownBy(() -> memberRepository.searchKeyset(condition, ageCursor, 1,
+        Sort.by(Sort.Direction.DESC, "age")))
+        .isInstanceOfAny(IllegalArgumentException.class,
+            InvalidDataAccessApiUsageException.class);
+    assertThat(memberRepository.searchKeyset(condition, ageCursor, 1,
+        Sort.by(Sort.Direction.ASC, "age")).getContent())
+        .extracting("username").containsExactly("member1");
+  }
+
+
+
+  // chunk 가 별도 트랜잭션으로 커밋되므로 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void bulkAddAgeAndDeleteTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    TableVersions.Snapshot initial = tableVersions.current();
+    Long[] ids = tx.execute(status -> {
+      Team teamA = new Team("bulkTeamA");
+      Team teamB = new Team("bulkTeamB");
+      em.persist(teamA);
+      em.persist(teamB);
+      Long[] result = new Long[25];
+      for (int i = 0; i < result.length; i++) {
+        Member member = new Member("bulk" + i, i, i % 2 == 0 ? teamA : teamB);
+        em.persist(member);
+        result[i] = member.getId();
+      }
+      return result;
+    });
+
+    // 커밋된 트랜잭션 하나당 바뀐 테이블의 버전이 한 번씩 오른다.
+    TableVersions.Snapshot seeded = tableVersions.current();
+    assertThat(seeded.member()).isEqualTo(initial.member() + 1);
+    assertThat(seeded.team()).isEqualTo(initial.team() + 1);
+
+    try {
+      tx.executeWithoutResult(status -> {
+        Member teamAMember = em.find(Member.class, ids[0]);
+        Member teamBMember = em.find(Member.class, ids[1]);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+        // chunk-size(1000) 보다 적지만 바깥 영속성 컨텍스트에서 대상만 detach 되는지 본다.
+        assertThat(memberRepository.bulkAddAge(condition, 100)).isEqualTo(13);
+
+        assertThat(em.contains(teamAMember)).isFalse();
+        assertThat(em.contains(teamBMember)).isTrue();
+        assertThat(em.find(Member.class, ids[0]).getAge()).isEqualTo(100);
+      });
+
+      MemberSearchCondition condition = new MemberSearchCondition();
+      condition.setTeamName("bulkTeamB");
+      condition.setAgeGoe(10);
+      assertThat(memberRepository.bulkDelete(condition)).isEqualTo(7);
+      assertThat(tableVersions.current().member()).isEqualTo(seeded.member() + 2);
+      assertThat(tableVersions.current().team()).isEqualTo(seeded.team());
+
+      MemberSearchCondition all = new MemberSearchCondition();
+      all.setAgeLoe(200);
+      assertThat(memberRepository.search(all)).extracting("username")
+          .doesNotContain("bulk11", "bulk23")
+          .contains("bulk1", "bulk9", "bulk24");
+    } finally {
+      tx.executeWithoutResult(status -> {
+        em.createQuery("delete from Member m where m.username like 'bulk%'").executeUpdate();
+        em.createQuery("delete from Team t where t.name like 'bulkTeam%'").executeUpdate();
+      });
+    }
+  }
 }
@@ -0,0 +1,163 @@
+package study.querydsl.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import jakarta.persistence.EntityManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * MemberSearchCondition 의 16가지 조건 조합마다 실제로 나가는 member 검색 SQL 을 H2 EXPLAIN 으로 확인해서
+ * member 테이블을 풀스캔하는 모양을 알려준다. 결과는 표준 출력으로 남긴다.
+ */
+@SpringBootTest
+@Transactional
+class MemberSearchIndexAdvisorTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  MemberRepository memberRepository;
+
+  @Autowired
+  MemberJpaRepository memberJpaRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  SqlCapture sqlCapture;
+
+  @Test
+  public void explainSearchShapes() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    for (int i = 0; i < 10; i++) {
+      em.persist(new Member("member" + i, i * 10, teamA));
+    }
+    em.flush();
+
+    List<String> joinFreeScans = new ArrayList<>();
+    for (int mask = 0; mask < 16; mask++) {
+      MemberSearchCondition condition = conditionOf(mask);
+
+      List<String> joinFree = explain(() -> memberRepository.search(condition));
+      List<String> joined = explain(() -> memberJpaRepository.search(condition));
+
+      System.out.printf("%-45s join-free: %-5s join: %s%n", describe(condition),
+          scans(joinFree) ? "SCAN" : "index", scans(joined) ? "SCAN" : "index");
+      joined.stream().filter(MemberSearchIndexAdvisorTest::isMemberScan)
+          .forEach(plan -> System.out.println("    " + plan));
+
+      if (scans(joinFree)) {
+        joinFreeScans.add(describe(condition));
+      }
+    }
+
+    // username 또는 teamName 조건이 있으면 member 테이블을 풀스캔하지 않아야 한다.
+    assertThat(joinFreeScans).allSatisfy(shape ->
+        assertThat(shape).doesNotContain("username").doesNotContain("teamName"));
+  }
+
+  private List<String> explain(Runnable search) {
+    sqlCapture.start();
+    search.run();
+    List<String> plans = new ArrayList<>();
+    for (String sql : sqlCapture.stop()) {
+      if (sql.toLowerCase().contains("from member")) {
+        plans.add(String.join(" ", jdbcTemplate.queryForList("explain " + sql, String.class)));
+      }
+    }
+    return plans;
+  }
+
+  private static boolean scans(List<String> plans) {
+    return plans.stream().anyMatch(MemberSearchIndexAdvisorTest::isMemberScan);
+  }
+
+  private static boolean isMemberScan(String plan) {
+    return plan.contains("PUBLIC.MEMBER.tableScan");
+  }
+
+  private static MemberSearchCondition conditionOf(int mask) {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    if ((mask & 1) != 0) {
+      condition.setUsername("member3");
+    }
+    if ((mask & 2) != 0) {
+      condition.setTeamName("teamA");
+    }
+    if ((mask & 4) != 0) {
+      condition.setAgeGoe(20);
+    }
+    if ((mask & 8) != 0) {
+      condition.setAgeLoe(60);
+    }
+    return condition;
+  }
+
+  private static String describe(MemberSearchCondition condition) {
+    List<String> filters = new ArrayList<>();
+    if (condition.getUsername() != null) {
+      filters.add("username");
+    }
+    if (condition.getTeamName() != null) {
+      filters.add("teamName");
+    }
+    if (condition.getAgeGoe() != null) {
+      filters.add("ageGoe");
+    }
+    if (condition.getAgeLoe() != null) {
+      filters.add("ageLoe");
+    }
+    return filters.isEmpty() ? "(no filter)" : String.join(" + ", filters);
+  }
+
+  @TestConfiguration
+  static class SqlCaptureConfig {
+
+    @Bean
+    SqlCapture sqlCapture() {
+      return new SqlCapture();
+    }
+  }
+
+  // p6spy 리스너로 바인딩 값이 들어간 SQL 을 모은다.
+  static class SqlCapture extends SimpleJdbcEventListener {
+
+    private List<String> captured;
+
+    void start() {
+      captured = new ArrayList<>();
+    }
+
+    List<String> stop() {
+      List<String> result = captured;
+      captured = null;
+      return result;
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+        SQLException e) {
+      List<String> target = captured;
+      if (target != null && e == null) {
+        target.add(statementInformation.getSqlWithValues());
+      }
+    }
+  }
+}
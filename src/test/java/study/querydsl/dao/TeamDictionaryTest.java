@@ -0,0 +1,111 @@
+package study.querydsl.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+// 팀 사전은 기본으로 꺼져 있으므로 켜고 실행한다.
+@SpringBootTest(properties = "member.search.team-dictionary=true")
+@Transactional
+class TeamDictionaryTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  MemberRepository memberRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Test
+  public void searchWithTeamDictionaryTest() throws Exception {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    em.persist(new Member("member1", 10, teamA));
+    em.persist(new Member("member2", 20, teamB));
+    em.persist(new Member("member3", 30));
+
+    MemberSearchCondition all = new MemberSearchCondition();
+    assertThat(memberRepository.search(all))
+        .extracting("username", "teamName")
+        .containsExactlyInAnyOrder(
+            tuple("member1", "teamA"), tuple("member2", "teamB"), tuple("member3", null));
+
+    MemberSearchCondition byTeam = new MemberSearchCondition();
+    byTeam.setTeamName("teamB");
+    assertThat(memberRepository.searchPageComplex(byTeam, PageRequest.of(0, 10)).getContent())
+        .extracting("username", "teamId")
+        .containsExactly(tuple("member2", teamB.getId()));
+
+    // 같은 트랜잭션에서 추가한 팀도 사전에 반영된다.
+    Team teamC = new Team("teamC");
+    em.persist(teamC);
+    em.persist(new Member("member4", 40, teamC));
+    MemberSearchCondition byNewTeam = new MemberSearchCondition();
+    byNewTeam.setTeamName("teamC");
+    assertThat(memberRepository.search(byNewTeam)).extracting("teamName").containsExactly("teamC");
+
+    MemberSearchCondition unknownTeam = new MemberSearchCondition();
+    unknownTeam.setTeamName("teamX");
+    assertThat(memberRepository.search(unknownTeam)).isEmpty();
+  }
+
+  // 사전을 읽어 둔 뒤 다른 트랜잭션에서 커밋된 팀 추가 / 이름 변경도 다음 검색에 보인다.
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void committedTeamChangeTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long teamId = tx.execute(status -> {
+      Team team = new Team("dictTeamA");
+      em.persist(team);
+      em.persist(new Member("dictMember1", 10, team));
+      return team.getId();
+    });
+
+    try {
+      MemberSearchCondition byTeamA = new MemberSearchCondition();
+      byTeamA.setTeamName("dictTeamA");
+      assertThat(memberRepository.search(byTeamA)).extracting("username")
+          .containsExactly("dictMember1");
+
+      tx.executeWithoutResult(status -> {
+        em.find(Team.class, teamId).setName("dictTeamB");
+        Team teamC = new Team("dictTeamC");
+        em.persist(teamC);
+        em.persist(new Member("dictMember2", 20, teamC));
+      });
+
+      MemberSearchCondition byTeamB = new MemberSearchCondition();
+      byTeamB.setTeamName("dictTeamB");
+      MemberSearchCondition byTeamC = new MemberSearchCondition();
+      byTeamC.setTeamName("dictTeamC");
+      assertThat(memberRepository.search(byTeamA)).isEmpty();
+      assertThat(memberRepository.search(byTeamB)).extracting("username", "teamName")
+          .containsExactly(tuple("dictMember1", "dictTeamB"));
+      assertThat(memberRepository.search(byTeamC)).extracting("username")
+          .containsExactly("dictMember2");
+    } finally {
+      tx.executeWithoutResult(status -> {
+        em.createQuery("delete from Member m where m.username like 'dictMember%'")
+            .executeUpdate();
+        em.createQuery("delete from TeamStats").executeUpdate();
+        em.createQuery("delete from Team t where t.name like 'dictTeam%'").executeUpdate();
+      });
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+// team_stats 는 커밋 직전에 반영되므로 테스트 트랜잭션 없이 커밋하고 직접 정리한다.
+@SpringBootTest
+class TeamStatsRepositoryTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  TeamStatsRepository teamStatsRepository;
+
+  @Autowired
+  TeamStatsMaintainer teamStatsMaintainer;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @AfterEach
+  void cleanUp() {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      em.createQuery("delete from Member").executeUpdate();
+      em.createQuery("delete from Team").executeUpdate();
+      em.createQuery("delete from TeamStats").executeUpdate();
+    });
+  }
+
+  @Test
+  public void incrementalStatsTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Long[] ids = tx.execute(status -> {
+      Team teamA = new Team("teamA");
+      Team teamB = new Team("teamB");
+      em.persist(teamA);
+      em.persist(teamB);
+      Member member1 = new Member("member1", 10, teamA);
+      Member member2 = new Member("member2", 20, teamA);
+      Member member3 = new Member("member3", 30, teamB);
+      Member member4 = new Member("member4", 40, teamB);
+      em.persist(member1);
+      em.persist(member2);
+      em.persist(member3);
+      em.persist(member4);
+      return new Long[]{teamA.getId(), teamB.getId(), member1.getId(), member4.getId()};
+    });
+
+    assertThat(teamStatsRepository.findAll())
+        .extracting("teamName", "memberCount", "ageSum", "ageMin", "ageMax")
+        .containsExactly(tuple("teamA", 2L, 30L, 10, 20), tuple("teamB", 2L, 70L, 30, 40));
+
+    // 나이 변경, 팀 이동, 삭제
+    tx.executeWithoutResult(status -> {
+      Member member1 = em.find(Member.class, ids[2]);
+      member1.setAge(15);
+      member1.changeTeam(em.find(Team.class, ids[1]));
+      em.remove(em.find(Member.class, ids[3]));
+    });
+
+    List<TeamStatsDto> stats = teamStatsRepository.findAll();
+    assertThat(stats)
+        .extracting("teamName", "memberCount", "ageSum", "ageMin", "ageMax")
+        .containsExactly(tuple("teamA", 1L, 20L, 20, 20), tuple("teamB", 2L, 45L, 15, 30));
+    assertThat(stats.get(1).getAgeAvg()).isEqualTo(22.5);
+
+    // 롤백된 변경은 반영되지 않는다. (다시 만들기 전에 증분 결과를 본다)
+    tx.executeWithoutResult(status -> {
+      em.persist(new Member("member5", 50, em.find(Team.class, ids[0])));
+      em.flush();
+      status.setRollbackOnly();
+    });
+    assertThat(teamStatsRepository.findAll()).usingRecursiveFieldByFieldElementComparator()
+        .containsExactlyElementsOf(stats);
+
+    // 증분 결과는 전체를 다시 센 것과 같다.
+    teamStatsRepository.rebuild();
+    assertThat(teamStatsRepository.findAll()).usingRecursiveFieldByFieldElementComparator()
+        .containsExactlyElementsOf(stats);
+  }
+
+  // 리스너 등록 전에(또는 이벤트 없이) 들어간 데이터는 시작 시점의 rebuild 로 채워진다.
+  @Test
+  public void rebuildOnStartupTest() throws Exception {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    tx.executeWithoutResult(status -> {
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      em.persist(new Member("member1", 10, teamA));
+      em.persist(new Member("member2", 30, teamA));
+    });
+    tx.executeWithoutResult(status -> em.createQuery("delete from TeamStats").executeUpdate());
+    assertThat(teamStatsRepository.findAll()).isEmpty();
+
+    teamStatsMaintainer.afterSingletonsInstantiated();
+    assertThat(teamStatsRepository.findAll())
+        .extracting("teamName", "memberCount", "ageSum", "ageMin", "ageMax")
+        .containsExactly(tuple("teamA", 2L, 40L, 10, 30));
+  }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.dao.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DbBulkheadTest {
+
+  @Test
+  public void rejectsWhenQueueDeadlinePassesTest() throws Exception {
+    DbBulkhead bulkhead = new DbBulkhead(1, Duration.ofMillis(50), 10);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      CompletableFuture<String> holder = bulkhead.callAsync(() -> {
+        started.countDown();
+        await(release);
+        return "done";
+      });
+      assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+      // 유일한 자리를 holder 가 쓰고 있으므로 deadline 이 지나면 실행되지 않고 실패한다.
+      CompletableFuture<String> queued = bulkhead.callAsync(() -> "never");
+      assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(DbBulkheadFullException.class);
+      assertThatThrownBy(() -> bulkhead.call(() -> "never"))
+          .isInstanceOf(DbBulkheadFullException.class);
+
+      release.countDown();
+      assertThat(holder.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+      assertThat(bulkhead.call(() -> "after")).isEqualTo("after");
+
+      DbBulkhead.Stats stats = bulkhead.stats();
+      assertThat(stats.getAccepted()).isEqualTo(2);
+      assertThat(stats.getRejected()).isEqualTo(2);
+      assertThat(stats.getInFlight()).isZero();
+      assertThat(stats.getQueued()).isZero();
+    } finally {
+      release.countDown();
+      bulkhead.destroy();
+    }
+  }
+
+  // 동시 count 가 쓰는 커넥션까지 합쳐서 풀을 넘지 않아야 한다.
+  @Test
+  public void permitsWithinPoolTest() throws Exception {
+    assertThat(DbBulkhead.permitsWithinPool(10, 4, 0)).isEqualTo(6);
+    assertThat(DbBulkhead.permitsWithinPool(10, 4, 5)).isEqualTo(5);
+    assertThat(DbBulkhead.permitsWithinPool(10, 0, 0)).isEqualTo(10);
+    assertThatThrownBy(() -> DbBulkhead.permitsWithinPool(10, 4, 8))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
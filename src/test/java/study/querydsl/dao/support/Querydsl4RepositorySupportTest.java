@@ -0,0 +1,79 @@
+package study.querydsl.dao.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@SpringBootTest
+@Transactional
+class Querydsl4RepositorySupportTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  MemberSupport support;
+
+  @BeforeEach
+  void setUp() {
+    support = new MemberSupport();
+    support.setEntityManager(em);
+    support.setTransactionManager(transactionManager);
+  }
+
+  // 루트 엔티티 세타 left join 은 한 회원에 여러 팀이 붙을 수 있으므로 count 에서 빼면 안 된다.
+  @Test
+  public void countKeepsThetaLeftJoinTest() throws Exception {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    em.persist(new Team("member1"));
+    em.persist(new Team("member1"));
+    em.persist(new Member("member1", 10, teamA));
+    em.persist(new Member("member2", 20, teamA));
+
+    Function<JPAQueryFactory, JPAQuery<?>> thetaJoin = queryFactory -> queryFactory
+        .select(member, team)
+        .from(member)
+        .leftJoin(team).on(member.username.eq(team.name));
+    assertThat(support.contentSize(thetaJoin)).isEqualTo(3);
+    assertThat(support.count(thetaJoin)).isEqualTo(3);
+
+    // to-one 연관관계 left join 은 빼도 count 가 같다.
+    Function<JPAQueryFactory, JPAQuery<?>> associationJoin = queryFactory -> queryFactory
+        .select(member, team)
+        .from(member)
+        .leftJoin(member.team, team);
+    assertThat(support.contentSize(associationJoin)).isEqualTo(2);
+    assertThat(support.count(associationJoin)).isEqualTo(2);
+  }
+
+  static class MemberSupport extends Querydsl4RepositorySupport {
+
+    MemberSupport() {
+      super(Member.class);
+    }
+
+    long count(Function<JPAQueryFactory, JPAQuery<?>> contentQuery) {
+      return countOf(contentQuery.apply(getQueryFactory())).getAsLong();
+    }
+
+    int contentSize(Function<JPAQueryFactory, JPAQuery<?>> contentQuery) {
+      return contentQuery.apply(getQueryFactory()).fetch().size();
+    }
+  }
+}
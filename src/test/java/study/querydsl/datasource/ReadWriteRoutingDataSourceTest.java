@@ -0,0 +1,219 @@
+package study.querydsl.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import jakarta.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dao.MemberJpaRepository;
+import study.querydsl.dao.MemberRepository;
+import study.querydsl.dao.TableVersions;
+import study.querydsl.dao.UsernameNgramIndex;
+import study.querydsl.datasource.ReadWriteRoutingDataSource.Route;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+// 인메모리 H2 두 개를 primary / replica 로 쓴다. 복제는 replicate() 에서 primary 를 통째로 복사해서 흉내 낸다.
+// 지연 확인은 스케줄러 대신 replicate() 에서 직접 한다.
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+    "db.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+    "db.replica.max-lag=1s",
+    "db.replica.lag-check-interval=1h"
+})
+@AutoConfigureMockMvc
+class ReadWriteRoutingDataSourceTest {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  ReadWriteRoutingDataSource routingDataSource;
+
+  @Autowired
+  MemberJpaRepository memberJpaRepository;
+
+  @Autowired
+  MemberRepository memberRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  @Autowired
+  UsernameNgramIndex usernameNgramIndex;
+
+  @AfterEach
+  void cleanUp() {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      em.createQuery("delete from Member").executeUpdate();
+      em.createQuery("delete from Team").executeUpdate();
+      em.createQuery("delete from TeamStats").executeUpdate();
+    });
+  }
+
+  @Test
+  public void readOnlyTransactionGoesToReplicaTest() throws Exception {
+    Long memberId = saveMember();
+    replicate();
+    changeAgeOnPrimary(memberId, 20);
+
+    long replicaConnections = routingDataSource.stats().getReplica().getRoutedConnections();
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsername("member1");
+
+    // 검색/페이지 조회는 아직 복제되지 않은 replica 의 값을 본다.
+    assertThat(memberJpaRepository.search(condition))
+        .extracting(MemberTeamDto::getAge).containsExactly(10);
+    Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition,
+        PageRequest.of(0, 10));
+    assertThat(page.getContent()).extracting(MemberTeamDto::getAge).containsExactly(10);
+    assertThat(routingDataSource.stats().getReplica().getRoutedConnections())
+        .isGreaterThan(replicaConnections);
+
+    // 쓰기 트랜잭션 안에서는 같은 조회도 primary 로 간다.
+    List<MemberTeamDto> inWriteTransaction = new TransactionTemplate(transactionManager)
+        .execute(status -> memberJpaRepository.search(condition));
+    assertThat(inWriteTransaction).extracting(MemberTeamDto::getAge).containsExactly(20);
+  }
+
+  @Test
+  public void laggingReplicaFallsBackToPrimaryTest() throws Exception {
+    Long memberId = saveMember();
+    replicate();
+    changeAgeOnPrimary(memberId, 20);
+    assertThat(routingDataSource.stats().isReplicaWithinTolerance()).isTrue();
+
+    // heartbeat 가 복제되지 않은 채 max-lag(1s) 이 지나면 readOnly 트랜잭션도 primary 로 보낸다.
+    Thread.sleep(1_200);
+    long fallbacks = routingDataSource.stats().getLagFallbacks();
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsername("member1");
+
+    assertThat(memberJpaRepository.search(condition))
+        .extracting(MemberTeamDto::getAge).containsExactly(20);
+    ReadWriteRoutingDataSource.Stats stats = routingDataSource.stats();
+    assertThat(stats.isReplicaWithinTolerance()).isFalse();
+    assertThat(stats.getReplicaLagMillis()).isGreaterThan(1_000);
+    assertThat(stats.getLagFallbacks()).isGreaterThan(fallbacks);
+
+    // 다시 따라잡으면 replica 로 돌아간다.
+    replicate();
+    assertThat(memberJpaRepository.search(condition))
+        .extracting(MemberTeamDto::getAge).containsExactly(20);
+    assertThat(routingDataSource.stats().isReplicaWithinTolerance()).isTrue();
+  }
+
+  // 쓰기 직후 replica 가 따라잡기 전에 읽은 결과는 ETag, count 캐시, username 색인에 남지 않는다.
+  @Test
+  public void replicaReadsAreNotCachedBeforeCatchUpTest() throws Exception {
+    saveMember();
+    replicate();
+    assertThat(tableVersions.current().replicated()).isTrue();
+
+    new TransactionTemplate(transactionManager).executeWithoutResult(
+        status -> em.persist(new Member("member2", 20)));
+    usernameNgramIndex.invalidate();
+    assertThat(tableVersions.current().replicated()).isFalse();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsernameContains("ember");
+    PageRequest pageRequest = PageRequest.of(0, 1);
+
+    // replica 에는 아직 member1 만 있다.
+    perform(get("/v1/members").param("usernameContains", "ember"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    assertThat(memberJpaRepository.search(condition)).extracting(MemberTeamDto::getUsername)
+        .containsExactly("member1");
+    assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements())
+        .isEqualTo(1);
+
+    // 따라잡은 뒤에는 새로 읽고, 그때부터 ETag 와 캐시를 쓴다.
+    replicate();
+    assertThat(tableVersions.current().replicated()).isTrue();
+    perform(get("/v1/members").param("usernameContains", "ember"))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG));
+    assertThat(memberJpaRepository.search(condition)).extracting(MemberTeamDto::getUsername)
+        .containsExactlyInAnyOrder("member1", "member2");
+    assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements())
+        .isEqualTo(2);
+  }
+
+  private Long saveMember() {
+    return new TransactionTemplate(transactionManager).execute(status -> {
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      Member member = new Member("member1", 10, teamA);
+      em.persist(member);
+      return member.getId();
+    });
+  }
+
+  private void changeAgeOnPrimary(Long memberId, int age) {
+    new TransactionTemplate(transactionManager).executeWithoutResult(
+        status -> em.find(Member.class, memberId).setAge(age));
+  }
+
+  // heartbeat 를 쓴 뒤 primary 를 replica 로 복사하고, replica 의 heartbeat 를 다시 읽는다.
+  // heartbeat 는 앞선 커밋보다 나중 시각이어야 그 커밋을 담은 것으로 보므로 조금 기다린 뒤에 쓴다.
+  private void replicate() throws Exception {
+    ReplicaLagMonitor lagMonitor = routingDataSource.lagMonitor();
+    Thread.sleep(5);
+    lagMonitor.refresh();
+
+    Path script = Files.createTempFile("replica", ".sql");
+    try {
+      execute(Route.PRIMARY, "SCRIPT TO '" + script + "'");
+      execute(Route.REPLICA, "DROP ALL OBJECTS");
+      execute(Route.REPLICA, "RUNSCRIPT FROM '" + script + "'");
+    } finally {
+      Files.deleteIfExists(script);
+    }
+    lagMonitor.refresh();
+  }
+
+  private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult result = mockMvc.perform(request).andReturn();
+    return mockMvc.perform(asyncDispatch(result));
+  }
+
+  private void execute(Route route, String sql) throws SQLException {
+    DataSource dataSource = routingDataSource.getResolvedDataSources().get(route);
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
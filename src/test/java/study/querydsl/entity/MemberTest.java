@@ -1,9 +1,12 @@
 package study.querydsl.entity;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 
 import jakarta.persistence.EntityManager;
 import java.util.List;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -46,4 +49,40 @@ class MemberTest {
       System.out.println("member.getTeam() = " + member.getTeam());
     }
   }
+
+  // Team 의 @BatchSize(100) 로 team 프록시는 100 개씩 IN 쿼리 하나로 초기화된다.
+  @Test
+  public void lazyTeamBatchFetchTest() {
+    List<Member> members = persistMembersInOwnTeams(12);
+
+    // 12 개 팀이 쿼리 하나로 초기화되므로 N+1 로 보지 않는다.
+    members.get(0).getTeam().getName();
+    assertThat(members).allSatisfy(member ->
+        assertThat(Hibernate.isInitialized(member.getTeam())).isTrue());
+    members.forEach(member -> member.getTeam().getName());
+  }
+
+  @Test
+  public void lazyTeamNPlusOneFailsTest() {
+    List<Member> members = persistMembersInOwnTeams(1_500);
+
+    // 배치로 묶어도 같은 모양의 team 조회가 15 번 실행된다.
+    // test 프로필은 n-plus-one.mode=FAIL 이라 같은 select 가 threshold(10) 를 넘으면 실패한다.
+    assertThatThrownBy(() -> members.forEach(member -> member.getTeam().getName()))
+        .hasStackTraceContaining("Possible N+1");
+  }
+
+  private List<Member> persistMembersInOwnTeams(int count) {
+    for (int i = 0; i < count; i++) {
+      Team team = new Team("team" + i);
+      em.persist(team);
+      em.persist(new Member("member" + i, i, team));
+    }
+
+    em.flush();
+    em.clear();
+
+    return em.createQuery("select m from Member m", Member.class)
+        .getResultList();
+  }
 }